@@ -0,0 +1,210 @@
+package frc.robot.lib;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.util.struct.Struct;
+import frc.robot.constants.FieldConstants.Reef.BranchHeight;
+import frc.robot.constants.FieldConstants.Reef.Side;
+import frc.robot.subsystems.vision.Vision.VisionSample;
+import frc.robot.subsystems.vision.Vision.VisionUpdate;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Pack and unpack throughput of the structs the robot publishes against WPILib's hand written
+ * {@link Pose2d#struct}. Run with the gc profiler to see the allocation rate of each.
+ *
+ * <p>The robot's types are marked with {@link ProceduralStructGenerator.GenerateStruct} so they
+ * measure the compile time structs, the {@code procedural*} benchmarks use identical unmarked types
+ * to measure {@link ProceduralStructGenerator#genRecord(Class)}, {@link
+ * ProceduralStructGenerator#genEnum(Class)} and {@link ProceduralStructGenerator#genObject(Class,
+ * java.util.function.Supplier)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StructBenchmark {
+    public record ProceduralUpdate(Pose2d pose, double timestamp, double weightScalar) {}
+
+    public enum ProceduralBranchHeight {
+        L4(1.8288, -1.5708),
+        L1(0.4572, 0.0);
+
+        public final double height;
+        public final double pitch;
+
+        ProceduralBranchHeight(double height, double pitch) {
+            this.height = height;
+            this.pitch = pitch;
+        }
+    }
+
+    public enum ProceduralSide {
+        CLOSE_LEFT(new Pose2d(3.65, 4.86, Rotation2d.fromDegrees(120.0))),
+        FAR_MID(new Pose2d(5.32, 4.03, Rotation2d.kZero));
+
+        public final Pose2d face;
+
+        ProceduralSide(Pose2d face) {
+            this.face = face;
+        }
+    }
+
+    public static final class MutableUpdate {
+        public Pose2d pose = Pose2d.kZero;
+        public double timestamp;
+        public double weightScalar;
+    }
+
+    private static final Struct<ProceduralUpdate> PROCEDURAL_UPDATE =
+            ProceduralStructGenerator.genRecord(ProceduralUpdate.class);
+    private static final Struct<ProceduralBranchHeight> PROCEDURAL_BRANCH_HEIGHT =
+            ProceduralStructGenerator.genEnum(ProceduralBranchHeight.class);
+    private static final Struct<ProceduralSide> PROCEDURAL_SIDE =
+            ProceduralStructGenerator.genEnum(ProceduralSide.class);
+    private static final Struct<MutableUpdate> PROCEDURAL_OBJECT =
+            ProceduralStructGenerator.genObject(MutableUpdate.class, MutableUpdate::new);
+
+    private final ByteBuffer m_buffer = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+    private final Pose2d m_pose = new Pose2d(1.0, 2.0, Rotation2d.fromDegrees(30.0));
+    private final VisionUpdate m_update = new VisionUpdate(m_pose, 3.0, 0.5);
+    private final VisionSample m_sample = new VisionSample(m_pose, 3.0, 0.5);
+    private final ProceduralUpdate m_proceduralUpdate = new ProceduralUpdate(m_pose, 3.0, 0.5);
+    private final MutableUpdate m_object = new MutableUpdate();
+
+    private final ByteBuffer m_poseBytes = packed(Pose2d.struct, m_pose);
+    private final ByteBuffer m_updateBytes = packed(VisionUpdate.struct, m_update);
+    private final ByteBuffer m_sampleBytes = packed(VisionSample.struct, m_sample);
+    private final ByteBuffer m_branchHeightBytes = packed(BranchHeight.struct, BranchHeight.L3);
+    private final ByteBuffer m_sideBytes = packed(Side.struct, Side.FAR_LEFT);
+    private final ByteBuffer m_proceduralUpdateBytes =
+            packed(PROCEDURAL_UPDATE, m_proceduralUpdate);
+    private final ByteBuffer m_proceduralBranchHeightBytes =
+            packed(PROCEDURAL_BRANCH_HEIGHT, ProceduralBranchHeight.L1);
+    private final ByteBuffer m_proceduralSideBytes =
+            packed(PROCEDURAL_SIDE, ProceduralSide.FAR_MID);
+    private final ByteBuffer m_proceduralObjectBytes = packed(PROCEDURAL_OBJECT, m_object);
+
+    private static <T> ByteBuffer packed(Struct<T> struct, T value) {
+        final ByteBuffer buffer =
+                ByteBuffer.allocate(struct.getSize()).order(ByteOrder.LITTLE_ENDIAN);
+        struct.pack(buffer, value);
+        return buffer;
+    }
+
+    private <T> ByteBuffer pack(Struct<T> struct, T value) {
+        m_buffer.clear();
+        struct.pack(m_buffer, value);
+        return m_buffer;
+    }
+
+    private static <T> T unpack(Struct<T> struct, ByteBuffer buffer) {
+        buffer.clear();
+        return struct.unpack(buffer);
+    }
+
+    @Setup
+    public void setup() {
+        m_object.pose = m_pose;
+        m_object.timestamp = 3.0;
+        m_object.weightScalar = 0.5;
+    }
+
+    @Benchmark
+    public ByteBuffer packPose2d() {
+        return pack(Pose2d.struct, m_pose);
+    }
+
+    @Benchmark
+    public ByteBuffer packVisionUpdate() {
+        return pack(VisionUpdate.struct, m_update);
+    }
+
+    @Benchmark
+    public ByteBuffer packVisionSample() {
+        return pack(VisionSample.struct, m_sample);
+    }
+
+    @Benchmark
+    public ByteBuffer packBranchHeight() {
+        return pack(BranchHeight.struct, BranchHeight.L3);
+    }
+
+    @Benchmark
+    public ByteBuffer packSide() {
+        return pack(Side.struct, Side.FAR_LEFT);
+    }
+
+    @Benchmark
+    public ByteBuffer proceduralPackRecord() {
+        return pack(PROCEDURAL_UPDATE, m_proceduralUpdate);
+    }
+
+    @Benchmark
+    public ByteBuffer proceduralPackEnum() {
+        return pack(PROCEDURAL_BRANCH_HEIGHT, ProceduralBranchHeight.L1);
+    }
+
+    @Benchmark
+    public ByteBuffer proceduralPackNestedEnum() {
+        return pack(PROCEDURAL_SIDE, ProceduralSide.FAR_MID);
+    }
+
+    @Benchmark
+    public ByteBuffer proceduralPackObject() {
+        return pack(PROCEDURAL_OBJECT, m_object);
+    }
+
+    @Benchmark
+    public Pose2d unpackPose2d() {
+        return unpack(Pose2d.struct, m_poseBytes);
+    }
+
+    @Benchmark
+    public VisionUpdate unpackVisionUpdate() {
+        return unpack(VisionUpdate.struct, m_updateBytes);
+    }
+
+    @Benchmark
+    public VisionSample unpackVisionSample() {
+        return unpack(VisionSample.struct, m_sampleBytes);
+    }
+
+    @Benchmark
+    public BranchHeight unpackBranchHeight() {
+        return unpack(BranchHeight.struct, m_branchHeightBytes);
+    }
+
+    @Benchmark
+    public Side unpackSide() {
+        return unpack(Side.struct, m_sideBytes);
+    }
+
+    @Benchmark
+    public ProceduralUpdate proceduralUnpackRecord() {
+        return unpack(PROCEDURAL_UPDATE, m_proceduralUpdateBytes);
+    }
+
+    @Benchmark
+    public ProceduralBranchHeight proceduralUnpackEnum() {
+        return unpack(PROCEDURAL_BRANCH_HEIGHT, m_proceduralBranchHeightBytes);
+    }
+
+    @Benchmark
+    public ProceduralSide proceduralUnpackNestedEnum() {
+        return unpack(PROCEDURAL_SIDE, m_proceduralSideBytes);
+    }
+
+    @Benchmark
+    public MutableUpdate proceduralUnpackObject() {
+        return unpack(PROCEDURAL_OBJECT, m_proceduralObjectBytes);
+    }
+}
@@ -0,0 +1,82 @@
+package frc.robot.lib;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.util.struct.Struct;
+import frc.robot.constants.FieldConstants.Reef.BranchHeight;
+import frc.robot.constants.FieldConstants.Reef.Side;
+import frc.robot.subsystems.vision.Vision.VisionSample;
+import frc.robot.subsystems.vision.Vision.VisionUpdate;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cold generation time of structs, the cost paid on the boot path. Generated structs are cached, so
+ * every fork measures a single first call in a fresh JVM.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class StructGenerationBenchmark {
+    public record Update(Pose2d pose, double timestamp, double weightScalar) {}
+
+    public enum Face {
+        CLOSE_LEFT(new Pose2d(3.65, 4.86, Rotation2d.fromDegrees(120.0))),
+        FAR_MID(new Pose2d(5.32, 4.03, Rotation2d.kZero));
+
+        public final Pose2d face;
+
+        Face(Pose2d face) {
+            this.face = face;
+        }
+    }
+
+    public static final class MutableUpdate {
+        public Pose2d pose = Pose2d.kZero;
+        public double timestamp;
+        public double weightScalar;
+    }
+
+    @Benchmark
+    public Struct<Update> genRecord() {
+        return ProceduralStructGenerator.genRecord(Update.class);
+    }
+
+    @Benchmark
+    public Struct<Face> genEnum() {
+        return ProceduralStructGenerator.genEnum(Face.class);
+    }
+
+    @Benchmark
+    public Struct<MutableUpdate> genObject() {
+        return ProceduralStructGenerator.genObject(MutableUpdate.class, MutableUpdate::new);
+    }
+
+    @Benchmark
+    public Struct<VisionUpdate> initVisionUpdate() {
+        return VisionUpdate.struct;
+    }
+
+    @Benchmark
+    public Struct<VisionSample> initVisionSample() {
+        return VisionSample.struct;
+    }
+
+    @Benchmark
+    public Struct<BranchHeight> initBranchHeight() {
+        return BranchHeight.struct;
+    }
+
+    @Benchmark
+    public Struct<Side> initSide() {
+        return Side.struct;
+    }
+}
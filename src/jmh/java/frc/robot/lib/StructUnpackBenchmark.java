@@ -0,0 +1,62 @@
+package frc.robot.lib;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.util.struct.Struct;
+import edu.wpi.first.util.struct.StructSerializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares decoding a record with {@link ProceduralStructGenerator#genRecord(Class)} against the
+ * reflective constructor lookup it used to do on every unpack.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StructUnpackBenchmark {
+    /** Shaped like a vision sample, left unannotated so it takes the procedural path. */
+    public record Sample(Pose2d pose, double timestamp, double weight, int tags)
+            implements StructSerializable {
+        public static final Struct<Sample> struct = ProceduralStructGenerator.genRecord(Sample.class);
+    }
+
+    private final ByteBuffer m_buffer =
+            ByteBuffer.allocate(Sample.struct.getSize()).order(ByteOrder.LITTLE_ENDIAN);
+
+    @Setup
+    public void setup() {
+        Sample.struct.pack(
+                m_buffer, new Sample(new Pose2d(1.0, 2.0, Rotation2d.fromDegrees(30.0)), 3.0, 0.5, 4));
+    }
+
+    @Benchmark
+    public Sample reflective() throws ReflectiveOperationException {
+        m_buffer.position(0);
+        Object[] args = new Object[4];
+        Class<?>[] argTypes = new Class<?>[4];
+        args[0] = Pose2d.struct.unpack(m_buffer);
+        args[1] = m_buffer.getDouble();
+        args[2] = m_buffer.getDouble();
+        args[3] = m_buffer.getInt();
+        argTypes[0] = Pose2d.class;
+        argTypes[1] = double.class;
+        argTypes[2] = double.class;
+        argTypes[3] = int.class;
+        return Sample.class.getConstructor(argTypes).newInstance(args);
+    }
+
+    @Benchmark
+    public Sample generated() {
+        m_buffer.position(0);
+        return Sample.struct.unpack(m_buffer);
+    }
+}
@@ -0,0 +1,103 @@
+package frc.robot.subsystems.vision;
+
+import edu.wpi.first.math.geometry.Transform3d;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.photonvision.targeting.PhotonTrackedTarget;
+import org.photonvision.targeting.TargetCorner;
+
+/**
+ * Compares {@link TargetScoring} against the three stream pipelines {@code Camera.update} used to
+ * score targets with. Run with the gc profiler, {@code gc.alloc.rate.norm} of {@code kernel} should
+ * be 0 bytes regardless of the target count.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TargetScoringBenchmark {
+  private static final double WIDTH = 1280.0;
+  private static final double HEIGHT = 800.0;
+
+  @Param({"1", "4", "8"})
+  public int targetCount;
+
+  private final TargetScoring scoring = new TargetScoring(WIDTH, HEIGHT);
+  private List<PhotonTrackedTarget> targets;
+
+  @Setup
+  public void setup() {
+    targets = new ArrayList<>();
+    for (int i = 0; i < targetCount; i++) {
+      final double x = 100.0 + i * 120.0;
+      final double y = 200.0 + i * 40.0;
+      final List<TargetCorner> corners =
+          List.of(
+              new TargetCorner(x, y + 60.0),
+              new TargetCorner(x + 55.0, y + 62.0),
+              new TargetCorner(x + 57.0, y + 2.0),
+              new TargetCorner(x + 2.0, y));
+      targets.add(
+          new PhotonTrackedTarget(
+              0.0, 0.0, 0.5 + i * 0.1, 0.0, i + 1, -1, -1.0f,
+              Transform3d.kZero, Transform3d.kZero, 0.1, corners, corners));
+    }
+  }
+
+  @Benchmark
+  public void kernel(Blackhole bh) {
+    scoring.score(targets);
+    bh.consume(scoring.sumArea());
+    bh.consume(scoring.avgNormalizedDistanceFromCenter());
+    bh.consume(scoring.avgDimensionProportion());
+  }
+
+  @Benchmark
+  public void streams(Blackhole bh) {
+    bh.consume(
+        targets.stream()
+            .map(PhotonTrackedTarget::getArea)
+            .mapToDouble(Double::doubleValue)
+            .sum());
+    bh.consume(
+        targets.stream()
+            .map(TargetScoringBenchmark::normalizedDistanceFromCenter)
+            .mapToDouble(Double::doubleValue)
+            .average()
+            .orElseGet(() -> 0.0));
+    bh.consume(
+        targets.stream()
+            .map(TargetScoringBenchmark::dimensionProportionDifference)
+            .mapToDouble(Double::doubleValue)
+            .average()
+            .orElseGet(() -> 0.0));
+  }
+
+  private static double normalizedDistanceFromCenter(PhotonTrackedTarget target) {
+    double sumX = 0.0;
+    double sumY = 0.0;
+    for (var corner : target.minAreaRectCorners) {
+      sumX += corner.x - WIDTH / 2.0;
+      sumY += corner.y - HEIGHT / 2.0;
+    }
+    double avgX = sumX / target.minAreaRectCorners.size();
+    double avgY = sumY / target.minAreaRectCorners.size();
+    return Math.hypot(avgX, avgY) / Math.hypot(WIDTH / 2.0, HEIGHT / 2.0);
+  }
+
+  private static double dimensionProportionDifference(PhotonTrackedTarget target) {
+    final var corners = target.getDetectedCorners();
+    double height = Math.abs(corners.get(0).y - corners.get(3).y);
+    double width = Math.abs(corners.get(1).x - corners.get(0).x);
+    return Math.min(height, width) / Math.max(height, width);
+  }
+}
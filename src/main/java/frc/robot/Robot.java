@@ -7,6 +7,9 @@ package frc.robot;
 import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.constants.ConstValues;
+import frc.robot.lib.CommandTracer;
+import frc.robot.lib.Tracer;
 
 /**
  * The methods in this class are called automatically corresponding to each mode, as described in
@@ -26,6 +29,13 @@ public class Robot extends TimedRobot {
     // Instantiate our RobotContainer.  This will perform all our button bindings, and put our
     // autonomous chooser on the dashboard.
     m_robotContainer = new RobotContainer();
+
+    Tracer.setOverrunThreshold(ConstValues.PERIODIC_TIME);
+    Tracer.enableOverrunCapture(50, ConstValues.PERIODIC_TIME);
+    if (!ConstValues.DEBUG) {
+      // full detail once a second, and right after any slow loop
+      Tracer.setSamplingPeriod(50);
+    }
   }
 
   /**
@@ -40,8 +50,9 @@ public class Robot extends TimedRobot {
     // Runs the Scheduler.  This is responsible for polling buttons, adding newly-scheduled
     // commands, running already-scheduled commands, removing finished or interrupted commands,
     // and running subsystem periodic() methods.  This must be called from the robot's periodic
-    // block in order for anything in the Command-based framework to work.
-    CommandScheduler.getInstance().run();
+    // block in order for anything in the Command-based framework to work. CommandTracer runs it
+    // inside a trace and traces every traced command and TracedSubsystem periodic under it.
+    CommandTracer.run();
   }
 
   /** This function is called once each time the robot enters Disabled mode. */
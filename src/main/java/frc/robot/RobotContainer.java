@@ -6,6 +6,7 @@ package frc.robot;
 
 import frc.robot.Constants.OperatorConstants;
 import frc.robot.commands.Autos;
+import frc.robot.lib.CommandTracer;
 import frc.robot.subsystems.Servos;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
@@ -44,10 +45,10 @@ public class RobotContainer {
    */
   private void configureBindings() {
 
-    m_driverController.a().onTrue(new InstantCommand(servo_device::openCageGuide, servo_device));
-    m_driverController.b().onTrue(new InstantCommand(servo_device::closeCageGuide, servo_device));
-    m_driverController.x().onTrue(new InstantCommand(servo_device::openCageGrip, servo_device));
-    m_driverController.y().onTrue(new InstantCommand(servo_device::closeCageGrip, servo_device));
+    m_driverController.a().onTrue(CommandTracer.traced(new InstantCommand(servo_device::openCageGuide, servo_device)));
+    m_driverController.b().onTrue(CommandTracer.traced(new InstantCommand(servo_device::closeCageGuide, servo_device)));
+    m_driverController.x().onTrue(CommandTracer.traced(new InstantCommand(servo_device::openCageGrip, servo_device)));
+    m_driverController.y().onTrue(CommandTracer.traced(new InstantCommand(servo_device::closeCageGrip, servo_device)));
 
     // Schedule `exampleMethodCommand` when the Xbox controller's B button is pressed,
     // cancelling on release.
@@ -61,6 +62,6 @@ public class RobotContainer {
    */
   public Command getAutonomousCommand() {
     // An example command will be run in autonomous
-    return new PrintCommand("no auto right now");
+    return CommandTracer.traced(new PrintCommand("no auto right now"));
   }
 }
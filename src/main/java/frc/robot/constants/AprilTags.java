@@ -147,16 +147,45 @@ public class AprilTags {
                                     new Quaternion(-0.8660254037844387, -0.0, 0.0, 0.49999999999999994))))
     };
 
-    public static boolean observableTag(int id) {
+    /**
+     * Gets the bit of a tag in a tag bitmask, where bit {@code n} is set if tag {@code n} is in the
+     * set. Every 2025 tag id fits in a {@code long}.
+     *
+     * @param id The id of the tag.
+     * @return The bit of the tag, 0 if the id doesn't fit in a bitmask.
+     */
+    public static long tagBit(int id) {
+        return id >= 0 && id < Long.SIZE ? 1L << id : 0L;
+    }
+
+    /** The tags on the blue and red halves of the field, as bitmasks of {@link #tagBit(int)}. */
+    private static final long BLUE_OBSERVABLE_TAGS = observableTags(true);
+
+    private static final long RED_OBSERVABLE_TAGS = observableTags(false);
+
+    private static long observableTags(boolean blue) {
+        long mask = 0L;
         for (AprilTag tag : TAGS) {
-            if (tag.ID == id) {
-                if (AllianceSymmetry.isBlue()) {
-                    return tag.pose.getX() < FieldConstants.FIELD_LENGTH / 2.0;
-                } else {
-                    return tag.pose.getX() > FieldConstants.FIELD_LENGTH / 2.0;
-                }
+            final boolean blueHalf = tag.pose.getX() < FieldConstants.FIELD_LENGTH / 2.0;
+            final boolean redHalf = tag.pose.getX() > FieldConstants.FIELD_LENGTH / 2.0;
+            if (blue ? blueHalf : redHalf) {
+                mask |= tagBit(tag.ID);
             }
         }
-        return false;
+        return mask;
+    }
+
+    /**
+     * Gets the tags on our alliance's half of the field. Both alliances' masks are precomputed,
+     * this only looks up the alliance, so look it up once and test each tag against the mask.
+     *
+     * @return A bitmask where bit {@code n} is set if tag {@code n} is observable.
+     */
+    public static long observableTagMask() {
+        return AllianceSymmetry.isBlue() ? BLUE_OBSERVABLE_TAGS : RED_OBSERVABLE_TAGS;
+    }
+
+    public static boolean observableTag(int id) {
+        return (observableTagMask() & tagBit(id)) != 0L;
     }
 }
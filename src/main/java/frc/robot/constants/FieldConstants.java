@@ -9,6 +9,7 @@ import edu.wpi.first.util.struct.StructSerializable;
 import frc.robot.constants.ConstValues.Conv;
 import java.util.List;
 import frc.robot.lib.ProceduralStructGenerator;
+import frc.robot.lib.ProceduralStructGenerator.GenerateStruct;
 
 /**
  * Contains various field dimensions and useful reference points. All units are in meters and poses
@@ -62,6 +63,7 @@ public class FieldConstants {
     private static final Pose2d CENTER_POSE = new Pose2d(CENTER, Rotation2d.kZero);
     private static final Translation2d FACE_OFFSET = new Translation2d(inchesToMeters(32.75), 0.0);
 
+    @GenerateStruct
     public enum BranchHeight implements StructSerializable {
       L4(inchesToMeters(72), -90 * Conv.DEGREES_TO_RADIANS),
       L3(inchesToMeters(47.625), -35 * Conv.DEGREES_TO_RADIANS),
@@ -80,6 +82,7 @@ public class FieldConstants {
           ProceduralStructGenerator.genEnum(BranchHeight.class);
     }
 
+    @GenerateStruct
     public enum Side implements StructSerializable {
       CLOSE_LEFT(Rotation2d.fromDegrees(120.0)),
       CLOSE_MID(Rotation2d.fromDegrees(180.0)),
@@ -135,6 +138,7 @@ public class FieldConstants {
     }
   }
 
+  @GenerateStruct
   public enum FaceSubLocation implements StructSerializable {
     LEFT,
     RIGHT,
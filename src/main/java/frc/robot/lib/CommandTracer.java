@@ -0,0 +1,86 @@
+package frc.robot.lib;
+
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import edu.wpi.first.wpilibj2.command.WrapperCommand;
+
+/**
+ * Runs the {@link CommandScheduler} inside a {@link Tracer} trace, giving a breakdown of the
+ * scheduler. Subsystems extending {@link TracedSubsystem} and commands wrapped with {@link
+ * #traced(Command)} are traced under it.
+ *
+ * <p>Commands are only traced when wrapped, the scheduler's callbacks fire after a command's method
+ * returns so they can't time it. Default commands of a {@link TracedSubsystem} are wrapped when they
+ * are set. Any other command scheduled without {@link #traced(Command)}, like one built by an auto
+ * library, gets no trace of its own and its time only shows up in "CommandScheduler".
+ *
+ * <p>Everything else the scheduler does, like polling triggers and checking {@code isFinished}, is
+ * only part of the "CommandScheduler" trace.
+ */
+public final class CommandTracer {
+    private static final String SCHEDULER_TRACE = "CommandScheduler";
+
+    private CommandTracer() {}
+
+    /** A command whose initialize, execute and end are each traced under its name. */
+    private static final class TracedCommand extends WrapperCommand {
+        private final String m_initializeTrace;
+        private final String m_executeTrace;
+        private final String m_endTrace;
+
+        private TracedCommand(Command command) {
+            super(command);
+            final String name = command.getName();
+            m_initializeTrace = name + ".initialize()";
+            m_executeTrace = name + ".execute()";
+            m_endTrace = name + ".end()";
+        }
+
+        @Override
+        public void initialize() {
+            Tracer.startTrace(m_initializeTrace);
+            m_command.initialize();
+            Tracer.endTrace();
+        }
+
+        @Override
+        public void execute() {
+            Tracer.startTrace(m_executeTrace);
+            m_command.execute();
+            Tracer.endTrace();
+        }
+
+        @Override
+        public void end(boolean interrupted) {
+            Tracer.startTrace(m_endTrace);
+            m_command.end(interrupted);
+            Tracer.endTrace();
+        }
+    }
+
+    /**
+     * Runs the command scheduler inside a "CommandScheduler" trace, should be called in place of
+     * {@code CommandScheduler.getInstance().run()} from {@code robotPeriodic}.
+     */
+    public static void run() {
+        Tracer.startTrace(SCHEDULER_TRACE);
+        CommandScheduler.getInstance().run();
+        Tracer.endTrace();
+    }
+
+    /**
+     * Wraps a command so its initialize, execute and end are traced as {@code
+     * <name>.initialize()}, {@code <name>.execute()} and {@code <name>.end()}. The traces time only
+     * the command's own methods. Like any composition, the command can't be scheduled on its own
+     * afterwards. A command that is already traced is returned as is.
+     *
+     * @param command the command to trace.
+     * @return the traced command, named after {@code command}.
+     */
+    public static Command traced(Command command) {
+        if (command instanceof TracedCommand) {
+            return command;
+        }
+        return new TracedCommand(command);
+    }
+}
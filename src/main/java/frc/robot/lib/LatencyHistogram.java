@@ -0,0 +1,140 @@
+package frc.robot.lib;
+
+import java.util.Arrays;
+
+/**
+ * A fixed memory histogram of latencies over a sliding window, used by {@link Tracer}.
+ *
+ * <p>Buckets are log-linear like HdrHistogram's, each power of two is split into 8 linear buckets so
+ * any percentile is reported within 12.5% of the recorded value. Values are in microseconds and
+ * clamp at about 33 seconds.
+ *
+ * <p>The window is made of slices, {@link #rotate()} drops the oldest slice and starts a new one.
+ * Recording and rotating never allocate.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 24;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final int[][] m_sliceCounts;
+    private final int[] m_sliceTotals;
+    private final int[] m_sliceOverruns;
+    private final long[] m_sliceMaxes;
+
+    private final int[] m_windowCounts = new int[BUCKETS];
+    private int m_windowTotal = 0;
+    private int m_slice = 0;
+
+    /**
+     * Creates a histogram with a window of {@code slices} slices.
+     *
+     * @param slices How many slices the window is made of.
+     */
+    LatencyHistogram(int slices) {
+        m_sliceCounts = new int[slices][BUCKETS];
+        m_sliceTotals = new int[slices];
+        m_sliceOverruns = new int[slices];
+        m_sliceMaxes = new long[slices];
+    }
+
+    static int bucketOf(long micros) {
+        final long value = Math.min(Math.max(micros, 0), MAX_VALUE);
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        final int shift = bucket / SUB_BUCKETS - 1;
+        final long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     * Records a latency into the current slice.
+     *
+     * @param micros The latency in microseconds.
+     * @param overrun Whether the latency counts as an overrun.
+     */
+    void record(long micros, boolean overrun) {
+        final int bucket = bucketOf(micros);
+        m_sliceCounts[m_slice][bucket]++;
+        m_windowCounts[bucket]++;
+        m_sliceTotals[m_slice]++;
+        m_windowTotal++;
+        if (overrun) {
+            m_sliceOverruns[m_slice]++;
+        }
+        m_sliceMaxes[m_slice] = Math.max(m_sliceMaxes[m_slice], micros);
+    }
+
+    /** Drops the oldest slice from the window and starts recording into a fresh one. */
+    void rotate() {
+        m_slice = (m_slice + 1) % m_sliceTotals.length;
+        final int[] counts = m_sliceCounts[m_slice];
+        for (int i = 0; i < BUCKETS; i++) {
+            m_windowCounts[i] -= counts[i];
+        }
+        Arrays.fill(counts, 0);
+        m_windowTotal -= m_sliceTotals[m_slice];
+        m_sliceTotals[m_slice] = 0;
+        m_sliceOverruns[m_slice] = 0;
+        m_sliceMaxes[m_slice] = 0;
+    }
+
+    /**
+     * Gets a percentile of the window.
+     *
+     * @param percentile The percentile between 0 and 1.
+     * @return The upper bound of the bucket the percentile falls in, in microseconds.
+     */
+    long percentile(double percentile) {
+        if (m_windowTotal == 0) {
+            return 0;
+        }
+        final long target = Math.max(1, (long) Math.ceil(percentile * m_windowTotal));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += m_windowCounts[i];
+            if (seen >= target) {
+                return upperBoundOf(i);
+            }
+        }
+        return upperBoundOf(BUCKETS - 1);
+    }
+
+    /**
+     * Gets the largest latency in the window.
+     *
+     * @return The exact max in microseconds.
+     */
+    long max() {
+        long max = 0;
+        for (long sliceMax : m_sliceMaxes) {
+            max = Math.max(max, sliceMax);
+        }
+        return max;
+    }
+
+    /**
+     * Gets how many overruns were recorded in the window.
+     *
+     * @return The overrun count.
+     */
+    int overruns() {
+        int overruns = 0;
+        for (int sliceOverruns : m_sliceOverruns) {
+            overruns += sliceOverruns;
+        }
+        return overruns;
+    }
+}
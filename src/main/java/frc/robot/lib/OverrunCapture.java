@@ -0,0 +1,307 @@
+package frc.robot.lib;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Keeps the trace trees of the last few cycles of a {@link Tracer} thread and writes them to a file
+ * whenever a cycle runs over budget, so intermittent overruns can be diagnosed after a match.
+ *
+ * <p>Cycles are recorded into a preallocated ring. On an overrun the ring is copied into a second
+ * preallocated ring and handed to a background thread, which adds GC, heap and thread state and
+ * writes everything as one binary file. Captures are rate limited and skipped while the previous
+ * one is still being written, so an overrunning loop isn't slowed down further. Only the newest
+ * {@link #MAX_FILES} captures are kept in the directory, including ones from earlier runs.
+ *
+ * <p>Files are big endian, in the order written by {@link #write(DataOutputStream)}:
+ *
+ * <ul>
+ *   <li>Header: magic {@code "TROV"}, version, FPGA capture time, budget, thread name.
+ *   <li>Paths: count, then each trace path, indexed by node id.
+ *   <li>Cycles, oldest first: count, then for each its FPGA end time, duration, GC time, and count
+ *       of (node id, start time, time without GC) traces. Times are in microseconds, GC in ms.
+ *   <li>GC: heap used, committed and max, then each collector's name, count and total time.
+ *   <li>Threads: count, then each thread's id, name, state, CPU time in ns, blocked count and time,
+ *       waited count and time.
+ * </ul>
+ */
+final class OverrunCapture {
+    private static final int MAGIC = 0x54524F56; // "TROV"
+    private static final short VERSION = 1;
+    private static final long MIN_CAPTURE_INTERVAL_MICROS = 10_000_000L;
+    private static final int MAX_FILES = 16;
+
+    /** A ring of cycles, each a list of the nodes traced in that cycle. */
+    private static final class Cycles {
+        private final long[] m_endTimes;
+        private final long[] m_durations;
+        private final long[] m_gcTimes;
+        private final int[] m_counts;
+        private final int[][] m_nodes;
+        private final long[][] m_starts;
+        private final long[][] m_elapsed;
+        private int m_next = 0;
+        private int m_filled = 0;
+
+        private Cycles(int capacity) {
+            m_endTimes = new long[capacity];
+            m_durations = new long[capacity];
+            m_gcTimes = new long[capacity];
+            m_counts = new int[capacity];
+            m_nodes = new int[capacity][16];
+            m_starts = new long[capacity][16];
+            m_elapsed = new long[capacity][16];
+        }
+
+        private void ensureSlotCapacity(int slot, int capacity) {
+            if (m_nodes[slot].length < capacity) {
+                m_nodes[slot] = Arrays.copyOf(m_nodes[slot], capacity);
+                m_starts[slot] = Arrays.copyOf(m_starts[slot], capacity);
+                m_elapsed[slot] = Arrays.copyOf(m_elapsed[slot], capacity);
+            }
+        }
+
+        private void copyTo(Cycles other) {
+            for (int slot = 0; slot < m_counts.length; slot++) {
+                other.ensureSlotCapacity(slot, m_counts[slot]);
+                System.arraycopy(m_nodes[slot], 0, other.m_nodes[slot], 0, m_counts[slot]);
+                System.arraycopy(m_starts[slot], 0, other.m_starts[slot], 0, m_counts[slot]);
+                System.arraycopy(m_elapsed[slot], 0, other.m_elapsed[slot], 0, m_counts[slot]);
+            }
+            System.arraycopy(m_endTimes, 0, other.m_endTimes, 0, m_endTimes.length);
+            System.arraycopy(m_durations, 0, other.m_durations, 0, m_durations.length);
+            System.arraycopy(m_gcTimes, 0, other.m_gcTimes, 0, m_gcTimes.length);
+            System.arraycopy(m_counts, 0, other.m_counts, 0, m_counts.length);
+            other.m_next = m_next;
+            other.m_filled = m_filled;
+        }
+    }
+
+    private final String m_threadName;
+    private final long m_budgetMicros;
+    private final Path m_directory;
+    private final ArrayDeque<Path> m_files = new ArrayDeque<>();
+
+    private final Cycles m_history;
+    private final Cycles m_snapshot;
+    private String[] m_snapshotPaths = new String[16];
+    private int m_snapshotPathCount = 0;
+    private long m_snapshotTime = 0;
+    private long m_lastCapture = -MIN_CAPTURE_INTERVAL_MICROS;
+
+    /** Set by the traced thread once a snapshot is ready, cleared by the writer once it's written. */
+    private final AtomicBoolean m_writing = new AtomicBoolean(false);
+
+    private final Thread m_writer;
+
+    /**
+     * Creates a capture and starts its writer thread.
+     *
+     * @param threadName The name of the traced thread.
+     * @param cycles How many cycles to keep.
+     * @param budgetMicros How long a cycle can take before it's captured, in microseconds.
+     * @param directory The directory to write captures to.
+     */
+    OverrunCapture(String threadName, int cycles, long budgetMicros, Path directory) {
+        m_threadName = threadName;
+        m_budgetMicros = budgetMicros;
+        m_directory = directory;
+        m_history = new Cycles(cycles);
+        m_snapshot = new Cycles(cycles);
+        findExistingFiles();
+
+        m_writer = new Thread(this::run, "TracerOverrunWriter");
+        m_writer.setDaemon(true);
+        m_writer.setPriority(Thread.MIN_PRIORITY);
+        m_writer.start();
+    }
+
+    /**
+     * Records a finished cycle and captures the history if it ran over budget. Never allocates
+     * unless the trace tree grew or a capture is taken.
+     *
+     * @param endTime The FPGA timestamp the cycle ended at in microseconds.
+     * @param duration How long the cycle took in microseconds.
+     * @param gcTime The gc time of the cycle in milliseconds.
+     * @param paths The path of every node.
+     * @param nodeCount How many nodes there are.
+     * @param traced Whether each node was traced this cycle.
+     * @param starts The start timestamp of each node in microseconds.
+     * @param elapsed The time of each node without gc in microseconds.
+     */
+    void recordCycle(
+            long endTime,
+            long duration,
+            long gcTime,
+            String[] paths,
+            int nodeCount,
+            boolean[] traced,
+            long[] starts,
+            long[] elapsed) {
+        final Cycles history = m_history;
+        final int slot = history.m_next;
+        history.ensureSlotCapacity(slot, nodeCount);
+        int count = 0;
+        for (int node = 1; node < nodeCount; node++) {
+            if (traced[node]) {
+                history.m_nodes[slot][count] = node;
+                history.m_starts[slot][count] = starts[node];
+                history.m_elapsed[slot][count] = elapsed[node];
+                count++;
+            }
+        }
+        history.m_counts[slot] = count;
+        history.m_endTimes[slot] = endTime;
+        history.m_durations[slot] = duration;
+        history.m_gcTimes[slot] = gcTime;
+        history.m_next = (slot + 1) % history.m_counts.length;
+        history.m_filled = Math.min(history.m_filled + 1, history.m_counts.length);
+
+        if (duration > m_budgetMicros
+                && endTime - m_lastCapture >= MIN_CAPTURE_INTERVAL_MICROS
+                && !m_writing.get()) {
+            m_lastCapture = endTime;
+            history.copyTo(m_snapshot);
+            if (m_snapshotPaths.length < nodeCount) {
+                m_snapshotPaths = new String[paths.length];
+            }
+            System.arraycopy(paths, 0, m_snapshotPaths, 0, nodeCount);
+            m_snapshotPathCount = nodeCount;
+            m_snapshotTime = endTime;
+            m_writing.set(true);
+            LockSupport.unpark(m_writer);
+        }
+    }
+
+    /** Adds the captures already in the directory, oldest first, so they count towards the limit. */
+    private void findExistingFiles() {
+        if (!Files.isDirectory(m_directory)) {
+            return;
+        }
+        final List<Path> existing = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(m_directory, "overrun-*.bin")) {
+            for (Path file : files) {
+                existing.add(file);
+            }
+            existing.sort(Comparator.comparingLong(OverrunCapture::lastModified));
+        } catch (IOException e) {
+            DriverStation.reportError("[Tracer] Could not list overrun captures: " + e.getMessage(), false);
+        }
+        m_files.addAll(existing);
+        try {
+            pruneFiles();
+        } catch (IOException e) {
+            DriverStation.reportError("[Tracer] Could not delete old overrun captures: " + e.getMessage(), false);
+        }
+    }
+
+    /** Deletes the oldest captures until there are at most {@link #MAX_FILES}. */
+    private void pruneFiles() throws IOException {
+        while (m_files.size() > MAX_FILES) {
+            Files.deleteIfExists(m_files.removeFirst());
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private void run() {
+        while (true) {
+            while (!m_writing.get()) {
+                LockSupport.park(this);
+            }
+            try {
+                Files.createDirectories(m_directory);
+                final Path file = m_directory.resolve("overrun-" + System.currentTimeMillis() + ".bin");
+                try (DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(file)))) {
+                    write(out);
+                }
+                m_files.addLast(file);
+                pruneFiles();
+                DriverStation.reportWarning("[Tracer] Loop overrun captured to " + file, false);
+            } catch (IOException e) {
+                DriverStation.reportError("[Tracer] Could not write overrun capture: " + e.getMessage(), false);
+            }
+            m_writing.set(false);
+        }
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(m_snapshotTime);
+        out.writeLong(m_budgetMicros);
+        out.writeUTF(m_threadName);
+
+        out.writeInt(m_snapshotPathCount);
+        for (int node = 0; node < m_snapshotPathCount; node++) {
+            out.writeUTF(node == 0 ? "" : m_snapshotPaths[node]);
+        }
+
+        final Cycles cycles = m_snapshot;
+        final int capacity = cycles.m_counts.length;
+        out.writeInt(cycles.m_filled);
+        for (int i = 0; i < cycles.m_filled; i++) {
+            final int slot = (cycles.m_next - cycles.m_filled + i + capacity) % capacity;
+            out.writeLong(cycles.m_endTimes[slot]);
+            out.writeLong(cycles.m_durations[slot]);
+            out.writeLong(cycles.m_gcTimes[slot]);
+            out.writeInt(cycles.m_counts[slot]);
+            for (int j = 0; j < cycles.m_counts[slot]; j++) {
+                out.writeInt(cycles.m_nodes[slot][j]);
+                out.writeLong(cycles.m_starts[slot][j]);
+                out.writeLong(cycles.m_elapsed[slot][j]);
+            }
+        }
+
+        final MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        out.writeLong(heap.getUsed());
+        out.writeLong(heap.getCommitted());
+        out.writeLong(heap.getMax());
+        final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        out.writeInt(collectors.size());
+        for (GarbageCollectorMXBean gc : collectors) {
+            out.writeUTF(gc.getName());
+            out.writeLong(gc.getCollectionCount());
+            out.writeLong(gc.getCollectionTime());
+        }
+
+        final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        final boolean cpuTime = threadBean.isThreadCpuTimeSupported() && threadBean.isThreadCpuTimeEnabled();
+        final ThreadInfo[] threads = threadBean.dumpAllThreads(false, false);
+        out.writeInt(threads.length);
+        for (ThreadInfo thread : threads) {
+            out.writeLong(thread.getThreadId());
+            out.writeUTF(thread.getThreadName());
+            out.writeByte(thread.getThreadState().ordinal());
+            out.writeLong(cpuTime ? threadBean.getThreadCpuTime(thread.getThreadId()) : -1);
+            out.writeLong(thread.getBlockedCount());
+            out.writeLong(thread.getBlockedTime());
+            out.writeLong(thread.getWaitedCount());
+            out.writeLong(thread.getWaitedTime());
+        }
+    }
+}
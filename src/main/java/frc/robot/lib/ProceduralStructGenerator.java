@@ -8,25 +8,38 @@ import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.RecordComponent;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.BaseStream;
+import java.util.stream.Collectors;
 
 /** A utility class for procedurally generating {@link Struct}s from records and enums. */
 public final class ProceduralStructGenerator {
@@ -34,6 +47,8 @@ public final class ProceduralStructGenerator {
         throw new UnsupportedOperationException("This is a utility class!");
     }
 
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
     /**
      * A functional interface representing a method that retrives a value from a {@link ByteBuffer}.
      */
@@ -55,73 +70,358 @@ public final class ProceduralStructGenerator {
         }
     }
 
-    private static class DoublePacker implements Packer<Double> {
-        public ByteBuffer packDouble(ByteBuffer buffer, double value) {
-            return buffer.putDouble(value);
-        }
+    /** A compiled accessor that reads a (possibly boxed) value out of its owner. */
+    @FunctionalInterface
+    private interface Getter {
+        Object get(Object owner);
+    }
 
-        public ByteBuffer pack(ByteBuffer buffer, Double value) {
-            return packDouble(buffer, value);
-        }
+    /** A compiled accessor that reads a {@code long} out of its owner without boxing. */
+    @FunctionalInterface
+    private interface LongGetter {
+        long get(Object owner);
+    }
+
+    /** A compiled accessor that reads a {@code int} out of its owner without boxing. */
+    @FunctionalInterface
+    private interface IntGetter {
+        int get(Object owner);
+    }
+
+    /** A compiled accessor that reads a {@code double} out of its owner without boxing. */
+    @FunctionalInterface
+    private interface DoubleGetter {
+        double get(Object owner);
     }
 
-    private record PrimType<T>(String name, int size, Unpacker<T> unpacker, Packer<T> packer) {
+    /** A compiled accessor that reads a {@code float} out of its owner without boxing. */
+    @FunctionalInterface
+    private interface FloatGetter {
+        float get(Object owner);
     }
 
-    /** A map of primitive types to their schema types. */
-    private static final HashMap<Class<?>, PrimType<?>> primitiveTypeMap = new HashMap<>();
+    /** A compiled accessor that reads a {@code boolean} out of its owner without boxing. */
+    @FunctionalInterface
+    private interface BooleanGetter {
+        boolean get(Object owner);
+    }
+
+    /** A compiled accessor that reads a {@code char} out of its owner without boxing. */
+    @FunctionalInterface
+    private interface CharGetter {
+        char get(Object owner);
+    }
+
+    /** A compiled accessor that reads a {@code byte} out of its owner without boxing. */
+    @FunctionalInterface
+    private interface ByteGetter {
+        byte get(Object owner);
+    }
+
+    /** A compiled accessor that reads a {@code short} out of its owner without boxing. */
+    @FunctionalInterface
+    private interface ShortGetter {
+        short get(Object owner);
+    }
+
+    /**
+     * A functional interface representing a {@link Packer} bound to the accessor of the field it
+     * packs. These are built once at generation time so packing never touches reflection.
+     */
+    @FunctionalInterface
+    private interface FieldPacker {
+        void pack(ByteBuffer buffer, Object owner);
+    }
+
+    /**
+     * A functional interface representing an {@link Unpacker} bound to the setter of the field it
+     * unpacks into.
+     */
+    @FunctionalInterface
+    private interface FieldUnpacker {
+        void unpack(ByteBuffer buffer, Object owner);
+    }
+
+    /** Binds an accessor of type {@code (Owner)prim} into a non-boxing {@link FieldPacker}. */
+    @FunctionalInterface
+    private interface PackerBinder {
+        FieldPacker bind(MethodHandle accessor, boolean spin);
+    }
+
+    /**
+     * Binds a setter handle of type {@code (Object, prim)void} into a non-boxing {@link
+     * FieldUnpacker}.
+     */
+    @FunctionalInterface
+    private interface UnpackerBinder {
+        FieldUnpacker bind(MethodHandle setter);
+    }
+
+    private record PrimType<T>(
+            String name,
+            int size,
+            Unpacker<T> unpacker,
+            Packer<T> packer,
+            PackerBinder packerBinder,
+            UnpackerBinder unpackerBinder) {
+    }
+
+    /** A map of primitive types to their schema types, never modified after class init. */
+    private static final Map<Class<?>, PrimType<?>> primitiveTypeMap;
 
     private static <T> void addPrimType(
+            Map<Class<?>, PrimType<?>> primitiveTypes,
             Class<T> boxedClass,
             Class<T> primitiveClass,
             String name,
             int size,
             Unpacker<T> unpacker,
-            Packer<T> packer) {
-        PrimType<T> primType = new PrimType<>(name, size, unpacker, packer);
-        primitiveTypeMap.put(boxedClass, primType);
-        primitiveTypeMap.put(primitiveClass, primType);
+            Packer<T> packer,
+            PackerBinder packerBinder,
+            UnpackerBinder unpackerBinder) {
+        PrimType<T> primType =
+                new PrimType<>(name, size, unpacker, packer, packerBinder, unpackerBinder);
+        primitiveTypes.put(boxedClass, primType);
+        primitiveTypes.put(primitiveClass, primType);
     }
 
     // Add primitive types to the map
     static {
+        final HashMap<Class<?>, PrimType<?>> primitiveTypes = new HashMap<>();
         addPrimType(
-                Long.class, long.class, "int64", Long.BYTES, ByteBuffer::getLong, ByteBuffer::putLong);
+                primitiveTypes,
+                Long.class,
+                long.class,
+                "int64",
+                Long.BYTES,
+                ByteBuffer::getLong,
+                ByteBuffer::putLong,
+                (accessor, spin) -> {
+                    final LongGetter getter = compileGetter(
+                            LongGetter.class,
+                            accessor,
+                            spin,
+                            handle -> owner -> {
+                                try {
+                                    return (long) handle.invokeExact(owner);
+                                } catch (Throwable t) {
+                                    throw rethrow(t);
+                                }
+                            });
+                    return (buffer, owner) -> buffer.putLong(getter.get(owner));
+                },
+                setter -> (buffer, owner) -> {
+                    try {
+                        setter.invokeExact(owner, buffer.getLong());
+                    } catch (Throwable t) {
+                        throw rethrow(t);
+                    }
+                });
         addPrimType(
-                Integer.class, int.class, "int32", Integer.BYTES, ByteBuffer::getInt, ByteBuffer::putInt);
+                primitiveTypes,
+                Integer.class,
+                int.class,
+                "int32",
+                Integer.BYTES,
+                ByteBuffer::getInt,
+                ByteBuffer::putInt,
+                (accessor, spin) -> {
+                    final IntGetter getter = compileGetter(
+                            IntGetter.class,
+                            accessor,
+                            spin,
+                            handle -> owner -> {
+                                try {
+                                    return (int) handle.invokeExact(owner);
+                                } catch (Throwable t) {
+                                    throw rethrow(t);
+                                }
+                            });
+                    return (buffer, owner) -> buffer.putInt(getter.get(owner));
+                },
+                setter -> (buffer, owner) -> {
+                    try {
+                        setter.invokeExact(owner, buffer.getInt());
+                    } catch (Throwable t) {
+                        throw rethrow(t);
+                    }
+                });
         addPrimType(
+                primitiveTypes,
                 Double.class,
                 double.class,
                 "float64",
                 Double.BYTES,
                 ByteBuffer::getDouble,
-                new DoublePacker());
+                ByteBuffer::putDouble,
+                (accessor, spin) -> {
+                    final DoubleGetter getter = compileGetter(
+                            DoubleGetter.class,
+                            accessor,
+                            spin,
+                            handle -> owner -> {
+                                try {
+                                    return (double) handle.invokeExact(owner);
+                                } catch (Throwable t) {
+                                    throw rethrow(t);
+                                }
+                            });
+                    return (buffer, owner) -> buffer.putDouble(getter.get(owner));
+                },
+                setter -> (buffer, owner) -> {
+                    try {
+                        setter.invokeExact(owner, buffer.getDouble());
+                    } catch (Throwable t) {
+                        throw rethrow(t);
+                    }
+                });
         addPrimType(
+                primitiveTypes,
                 Float.class,
                 float.class,
                 "float32",
                 Float.BYTES,
                 ByteBuffer::getFloat,
-                ByteBuffer::putFloat);
+                ByteBuffer::putFloat,
+                (accessor, spin) -> {
+                    final FloatGetter getter = compileGetter(
+                            FloatGetter.class,
+                            accessor,
+                            spin,
+                            handle -> owner -> {
+                                try {
+                                    return (float) handle.invokeExact(owner);
+                                } catch (Throwable t) {
+                                    throw rethrow(t);
+                                }
+                            });
+                    return (buffer, owner) -> buffer.putFloat(getter.get(owner));
+                },
+                setter -> (buffer, owner) -> {
+                    try {
+                        setter.invokeExact(owner, buffer.getFloat());
+                    } catch (Throwable t) {
+                        throw rethrow(t);
+                    }
+                });
         addPrimType(
+                primitiveTypes,
                 Boolean.class,
                 boolean.class,
                 "bool",
                 Byte.BYTES,
                 buffer -> buffer.get() != 0,
-                (buffer, value) -> buffer.put((byte) (value ? 1 : 0)));
+                (buffer, value) -> buffer.put((byte) (value ? 1 : 0)),
+                (accessor, spin) -> {
+                    final BooleanGetter getter = compileGetter(
+                            BooleanGetter.class,
+                            accessor,
+                            spin,
+                            handle -> owner -> {
+                                try {
+                                    return (boolean) handle.invokeExact(owner);
+                                } catch (Throwable t) {
+                                    throw rethrow(t);
+                                }
+                            });
+                    return (buffer, owner) -> buffer.put((byte) (getter.get(owner) ? 1 : 0));
+                },
+                setter -> (buffer, owner) -> {
+                    try {
+                        setter.invokeExact(owner, buffer.get() != 0);
+                    } catch (Throwable t) {
+                        throw rethrow(t);
+                    }
+                });
         addPrimType(
+                primitiveTypes,
                 Character.class,
                 char.class,
-                "char",
+                // a schema char is a single byte, a java char is an unsigned 16 bit code unit
+                "uint16",
                 Character.BYTES,
                 ByteBuffer::getChar,
-                ByteBuffer::putChar);
-        addPrimType(Byte.class, byte.class, "uint8", Byte.BYTES, ByteBuffer::get, ByteBuffer::put);
+                ByteBuffer::putChar,
+                (accessor, spin) -> {
+                    final CharGetter getter = compileGetter(
+                            CharGetter.class,
+                            accessor,
+                            spin,
+                            handle -> owner -> {
+                                try {
+                                    return (char) handle.invokeExact(owner);
+                                } catch (Throwable t) {
+                                    throw rethrow(t);
+                                }
+                            });
+                    return (buffer, owner) -> buffer.putChar(getter.get(owner));
+                },
+                setter -> (buffer, owner) -> {
+                    try {
+                        setter.invokeExact(owner, buffer.getChar());
+                    } catch (Throwable t) {
+                        throw rethrow(t);
+                    }
+                });
         addPrimType(
-                Short.class, short.class, "int16", Short.BYTES, ByteBuffer::getShort, ByteBuffer::putShort);
+                primitiveTypes,
+                Byte.class,
+                byte.class,
+                "uint8",
+                Byte.BYTES,
+                ByteBuffer::get,
+                ByteBuffer::put,
+                (accessor, spin) -> {
+                    final ByteGetter getter = compileGetter(
+                            ByteGetter.class,
+                            accessor,
+                            spin,
+                            handle -> owner -> {
+                                try {
+                                    return (byte) handle.invokeExact(owner);
+                                } catch (Throwable t) {
+                                    throw rethrow(t);
+                                }
+                            });
+                    return (buffer, owner) -> buffer.put(getter.get(owner));
+                },
+                setter -> (buffer, owner) -> {
+                    try {
+                        setter.invokeExact(owner, buffer.get());
+                    } catch (Throwable t) {
+                        throw rethrow(t);
+                    }
+                });
         addPrimType(
-                Long.class, long.class, "int64", Long.BYTES, ByteBuffer::getLong, ByteBuffer::putLong);
+                primitiveTypes,
+                Short.class,
+                short.class,
+                "int16",
+                Short.BYTES,
+                ByteBuffer::getShort,
+                ByteBuffer::putShort,
+                (accessor, spin) -> {
+                    final ShortGetter getter = compileGetter(
+                            ShortGetter.class,
+                            accessor,
+                            spin,
+                            handle -> owner -> {
+                                try {
+                                    return (short) handle.invokeExact(owner);
+                                } catch (Throwable t) {
+                                    throw rethrow(t);
+                                }
+                            });
+                    return (buffer, owner) -> buffer.putShort(getter.get(owner));
+                },
+                setter -> (buffer, owner) -> {
+                    try {
+                        setter.invokeExact(owner, buffer.getShort());
+                    } catch (Throwable t) {
+                        throw rethrow(t);
+                    }
+                });
+        primitiveTypeMap = Map.copyOf(primitiveTypes);
     }
 
     /**
@@ -130,7 +430,24 @@ public final class ProceduralStructGenerator {
      * <p>This allows adding custom struct implementations for types that are not supported by
      * default. Think of vendor-specific.
      */
-    private static final HashMap<Class<?>, Struct<?>> customStructTypeMap = new HashMap<>();
+    private static final ConcurrentHashMap<Class<?>, Struct<?>> customStructTypeMap =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Registers a struct for a type unless another thread got there first.
+     *
+     * @return The struct registered for the type.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Struct<T> register(Class<T> clazz, Struct<T> struct) {
+        final Struct<?> existing = customStructTypeMap.putIfAbsent(clazz, struct);
+        return existing == null ? struct : (Struct<T>) existing;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Optional<Struct<T>> registered(Class<T> clazz) {
+        return Optional.ofNullable((Struct<T>) customStructTypeMap.get(clazz));
+    }
 
     /**
      * Add a custom struct to the structifier.
@@ -199,6 +516,33 @@ public final class ProceduralStructGenerator {
         }
     }
 
+    /**
+     * Returns the {@link Struct} for a class, generating it on first use. Registered structs are
+     * returned first, then the {@code struct} field of {@link StructSerializable} classes, then
+     * records and enums are generated and registered. Safe to call from any thread.
+     *
+     * @param <T> The type of the class.
+     * @param clazz The class to find the struct for.
+     * @return An optional containing the struct if one exists or could be generated.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static <T> Optional<Struct<T>> structFor(Class<T> clazz) {
+        final Optional<Struct<T>> registered = registered(clazz);
+        if (registered.isPresent()) {
+            return registered;
+        }
+        final Optional<Struct<?>> extracted = extractClassStructDynamic(clazz);
+        if (extracted.isPresent()) {
+            return Optional.of((Struct<T>) extracted.get());
+        }
+        if (clazz.isRecord()) {
+            return Optional.of((Struct<T>) genRecord(clazz.asSubclass(Record.class)));
+        } else if (clazz.isEnum()) {
+            return Optional.of((Struct<T>) genEnum((Class) clazz));
+        }
+        return Optional.empty();
+    }
+
     /**
      * Returns a byte array of the given size with the given string at the beginning. If the string is
      * longer than the size, it will be truncated. If the string is shorter than the size, the rest of
@@ -234,6 +578,56 @@ public final class ProceduralStructGenerator {
         int size();
     }
 
+    /**
+     * Marks a record or enum for compile time struct generation by the {@code struct-processor}
+     * annotation processor. {@link #genRecord(Class)} and {@link #genEnum(Class)} will use the
+     * generated struct when it exists and fall back to generating one procedurally otherwise.
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.TYPE)
+    @Documented
+    public @interface GenerateStruct {
+    }
+
+    /**
+     * The binary name of the struct the annotation processor generates for a class, the nesting
+     * chain of the class joined by underscores with a {@code Struct} suffix.
+     */
+    private static String generatedStructName(Class<?> clazz) {
+        return clazz.getName().replace('$', '_') + "Struct";
+    }
+
+    /**
+     * Returns the compile time generated {@link Struct} for a class marked with {@link
+     * GenerateStruct}. If the class isn't marked or the processor skipped it, an empty {@link
+     * Optional} is returned.
+     *
+     * @param <T> The type of the class.
+     * @param clazz The class to find the generated struct for.
+     * @return An optional containing the generated struct if it exists.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Optional<Struct<T>> loadGeneratedStruct(Class<T> clazz) {
+        if (!clazz.isAnnotationPresent(GenerateStruct.class)) {
+            return Optional.empty();
+        }
+        try {
+            final Class<?> generated =
+                    Class.forName(generatedStructName(clazz), true, clazz.getClassLoader());
+            final Struct<T> struct = (Struct<T>) generated.getDeclaredConstructor().newInstance();
+            return Optional.of(register(clazz, struct));
+        } catch (ClassNotFoundException e) {
+            return Optional.empty();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            System.out.println(
+                    "[WARNING] Could not load generated struct: "
+                            + clazz.getSimpleName()
+                            + "\n    "
+                            + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
     private static OptionalInt arraySize(AnnotatedElement field) {
         return Optional.ofNullable(field.getAnnotation(FixedSizeArray.class))
                 .map(FixedSizeArray::size)
@@ -276,18 +670,21 @@ public final class ProceduralStructGenerator {
             if (clazz.isArray() && arraySize.isPresent()) {
                 final Class<?> componentType = clazz.getComponentType();
                 final int size = arraySize.getAsInt();
+                if (componentType.isPrimitive()) {
+                    return primitiveArrayField(name, componentType, size);
+                }
                 final StructField componentField = fromNameAndClass(
                         componentType.getSimpleName(), componentType, OptionalInt.empty(), false);
                 return new StructField(
                         name + "[" + size + "]",
                         componentField.type,
                         componentField.size * size,
-                        isFinal,
+                        false,
                         componentField.structsToLoad,
                         buffer -> {
-                            Object[] array = new Object[size];
+                            Object array = Array.newInstance(componentType, size);
                             for (int i = 0; i < size; i++) {
-                                array[i] = componentField.unpacker.unpack(buffer);
+                                Array.set(array, i, componentField.unpacker.unpack(buffer));
                             }
                             return array;
                         },
@@ -319,24 +716,12 @@ public final class ProceduralStructGenerator {
                         primType.unpacker,
                         primType.packer);
             } else {
-                Struct<?> struct = null;
-                if (customStructTypeMap.containsKey(clazz)) {
-                    struct = customStructTypeMap.get(clazz);
-                } else if (StructSerializable.class.isAssignableFrom(clazz)) {
-                    struct = extractClassStructDynamic(clazz).orElse(null);
-                }
+                Struct<?> struct = structFor(clazz).orElse(null);
                 if (struct == null) {
                     System.out.println("[WARNING] Could not structify field: " + name);
                     return null;
                 }
-                Set<Struct<?>> structsToLoad = new HashSet<>();
-                for (Struct<?> nestedStruct : struct.getNested()) {
-                    // `Set.of` crashes on duplicate elements
-                    if (structsToLoad.contains(nestedStruct)) {
-                        continue;
-                    }
-                    structsToLoad.add(nestedStruct);
-                }
+                Set<Struct<?>> structsToLoad = new LinkedHashSet<>(Arrays.asList(struct.getNested()));
                 structsToLoad.add(struct);
                 return new StructField(
                         name,
@@ -350,6 +735,137 @@ public final class ProceduralStructGenerator {
         }
     }
 
+    private static void checkArrayLength(int length, int size) {
+        if (length != size) {
+            throw new IllegalArgumentException(
+                    "Array has length " + length + " but the field has size " + size);
+        }
+    }
+
+    /**
+     * Creates a {@link StructField} for a fixed size array of primitives. The elements are copied
+     * in bulk through a view of the buffer instead of being boxed one by one.
+     *
+     * @param name The name of the field.
+     * @param componentType The primitive component type of the array.
+     * @param size The fixed size of the array.
+     * @return The struct field.
+     */
+    private static StructField primitiveArrayField(String name, Class<?> componentType, int size) {
+        final PrimType<?> primType = primitiveTypeMap.get(componentType);
+        final int bytes = primType.size() * size;
+        final Unpacker<?> unpacker;
+        final Packer<?> packer;
+        if (componentType == double.class) {
+            unpacker = buffer -> {
+                double[] array = new double[size];
+                buffer.asDoubleBuffer().get(array);
+                buffer.position(buffer.position() + bytes);
+                return array;
+            };
+            packer = (buffer, value) -> {
+                double[] array = (double[]) value;
+                checkArrayLength(array.length, size);
+                buffer.asDoubleBuffer().put(array);
+                return buffer.position(buffer.position() + bytes);
+            };
+        } else if (componentType == float.class) {
+            unpacker = buffer -> {
+                float[] array = new float[size];
+                buffer.asFloatBuffer().get(array);
+                buffer.position(buffer.position() + bytes);
+                return array;
+            };
+            packer = (buffer, value) -> {
+                float[] array = (float[]) value;
+                checkArrayLength(array.length, size);
+                buffer.asFloatBuffer().put(array);
+                return buffer.position(buffer.position() + bytes);
+            };
+        } else if (componentType == long.class) {
+            unpacker = buffer -> {
+                long[] array = new long[size];
+                buffer.asLongBuffer().get(array);
+                buffer.position(buffer.position() + bytes);
+                return array;
+            };
+            packer = (buffer, value) -> {
+                long[] array = (long[]) value;
+                checkArrayLength(array.length, size);
+                buffer.asLongBuffer().put(array);
+                return buffer.position(buffer.position() + bytes);
+            };
+        } else if (componentType == int.class) {
+            unpacker = buffer -> {
+                int[] array = new int[size];
+                buffer.asIntBuffer().get(array);
+                buffer.position(buffer.position() + bytes);
+                return array;
+            };
+            packer = (buffer, value) -> {
+                int[] array = (int[]) value;
+                checkArrayLength(array.length, size);
+                buffer.asIntBuffer().put(array);
+                return buffer.position(buffer.position() + bytes);
+            };
+        } else if (componentType == short.class) {
+            unpacker = buffer -> {
+                short[] array = new short[size];
+                buffer.asShortBuffer().get(array);
+                buffer.position(buffer.position() + bytes);
+                return array;
+            };
+            packer = (buffer, value) -> {
+                short[] array = (short[]) value;
+                checkArrayLength(array.length, size);
+                buffer.asShortBuffer().put(array);
+                return buffer.position(buffer.position() + bytes);
+            };
+        } else if (componentType == char.class) {
+            unpacker = buffer -> {
+                char[] array = new char[size];
+                buffer.asCharBuffer().get(array);
+                buffer.position(buffer.position() + bytes);
+                return array;
+            };
+            packer = (buffer, value) -> {
+                char[] array = (char[]) value;
+                checkArrayLength(array.length, size);
+                buffer.asCharBuffer().put(array);
+                return buffer.position(buffer.position() + bytes);
+            };
+        } else if (componentType == byte.class) {
+            unpacker = buffer -> {
+                byte[] array = new byte[size];
+                buffer.get(array);
+                return array;
+            };
+            packer = (buffer, value) -> {
+                byte[] array = (byte[]) value;
+                checkArrayLength(array.length, size);
+                return buffer.put(array);
+            };
+        } else {
+            unpacker = buffer -> {
+                boolean[] array = new boolean[size];
+                for (int i = 0; i < size; i++) {
+                    array[i] = buffer.get() != 0;
+                }
+                return array;
+            };
+            packer = (buffer, value) -> {
+                boolean[] array = (boolean[]) value;
+                checkArrayLength(array.length, size);
+                for (boolean element : array) {
+                    buffer.put((byte) (element ? 1 : 0));
+                }
+                return buffer;
+            };
+        }
+        return new StructField(
+                name + "[" + size + "]", primType.name(), bytes, false, Set.of(), unpacker, packer);
+    }
+
     /**
      * Introspects a class to determine if it's a fixed size.
      *
@@ -430,6 +946,193 @@ public final class ProceduralStructGenerator {
         return false;
     }
 
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException e) {
+            throw e;
+        } else if (t instanceof Error e) {
+            throw e;
+        }
+        return new IllegalStateException(t);
+    }
+
+    /**
+     * Spins a hidden class implementing {@code getterType} around a direct accessor handle using
+     * {@link LambdaMetafactory}, this is as cheap to call as a hand written lambda.
+     *
+     * @return The spun getter or null if the owner of the accessor can't be linked from this class.
+     */
+    private static <G> G spinGetter(
+            Class<G> getterType, MethodHandle accessor, Class<?> erasedType) {
+        final MethodType accessorType = accessor.type();
+        try {
+            LOOKUP.accessClass(accessorType.parameterType(0));
+            final CallSite site = LambdaMetafactory.metafactory(
+                    LOOKUP,
+                    "get",
+                    MethodType.methodType(getterType),
+                    MethodType.methodType(erasedType, Object.class),
+                    accessor,
+                    erasedType.isPrimitive()
+                            ? accessorType
+                            : accessorType.changeReturnType(accessorType.wrap().returnType()));
+            return getterType.cast(site.getTarget().invoke());
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    /**
+     * Compiles an accessor handle into a getter, spinning it when possible and otherwise adapting
+     * the handle with {@code fallback}.
+     *
+     * @param getterType The getter interface to implement.
+     * @param accessor A handle of type {@code (Owner)FieldType} that reads the field.
+     * @param spin Whether the accessor is a method that can be spun into a hidden class.
+     * @param fallback Wraps a handle of type {@code (Object)FieldType} into the getter.
+     * @return The compiled getter.
+     */
+    private static <G> G compileGetter(
+            Class<G> getterType,
+            MethodHandle accessor,
+            boolean spin,
+            Function<MethodHandle, G> fallback) {
+        final Class<?> type = accessor.type().returnType();
+        final Class<?> erasedType = type.isPrimitive() ? type : Object.class;
+        if (spin) {
+            final G getter = spinGetter(getterType, accessor, erasedType);
+            if (getter != null) {
+                return getter;
+            }
+        }
+        return fallback.apply(accessor.asType(MethodType.methodType(erasedType, Object.class)));
+    }
+
+    /**
+     * Binds the packer of a {@link StructField} to a compiled accessor for the value it packs.
+     * Primitive fields are bound to their {@link PrimType}'s non-boxing packer.
+     *
+     * @param field The struct field to bind.
+     * @param accessor A handle of type {@code (Owner)FieldType} that reads the field.
+     * @param spin Whether the accessor is a method that can be spun into a hidden class.
+     * @return The bound packer.
+     */
+    @SuppressWarnings("unchecked")
+    private static FieldPacker bindPacker(StructField field, MethodHandle accessor, boolean spin) {
+        final Class<?> type = accessor.type().returnType();
+        if (type.isPrimitive()) {
+            return primitiveTypeMap.get(type).packerBinder().bind(accessor, spin);
+        }
+        final Getter getter = compileGetter(Getter.class, accessor, spin, handle -> owner -> {
+            try {
+                return (Object) handle.invokeExact(owner);
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        });
+        final Packer<Object> packer = (Packer<Object>) field.packer();
+        return (buffer, owner) -> {
+            final Object value = getter.get(owner);
+            if (value == null) {
+                throw new IllegalArgumentException("Field is null");
+            }
+            packer.pack(buffer, value);
+        };
+    }
+
+    /**
+     * Binds the unpacker of a {@link StructField} to a setter for the value it unpacks. Primitive
+     * fields are bound to their {@link PrimType}'s non-boxing unpacker.
+     *
+     * @param field The struct field to bind.
+     * @param setter A handle of type {@code (Owner, FieldType)void} that writes the field.
+     * @return The bound unpacker.
+     */
+    private static FieldUnpacker bindUnpacker(StructField field, MethodHandle setter) {
+        final Class<?> type = setter.type().parameterType(1);
+        if (type.isPrimitive()) {
+            return primitiveTypeMap
+                    .get(type)
+                    .unpackerBinder()
+                    .bind(setter.asType(MethodType.methodType(void.class, Object.class, type)));
+        }
+        final MethodHandle handle = setter.asType(
+                MethodType.methodType(void.class, Object.class, Object.class));
+        final Unpacker<?> unpacker = field.unpacker();
+        return (buffer, owner) -> {
+            try {
+                handle.invokeExact(owner, (Object) unpacker.unpack(buffer));
+            } catch (Throwable t) {
+                throw rethrow(t);
+            }
+        };
+    }
+
+    private static boolean getBoolean(ByteBuffer buffer, int index) {
+        return buffer.get(index) != 0;
+    }
+
+    private static Object unpackAt(Unpacker<?> unpacker, int offset, ByteBuffer buffer) {
+        final int position = buffer.position();
+        buffer.position(position + offset);
+        try {
+            return unpacker.unpack(buffer);
+        } finally {
+            buffer.position(position);
+        }
+    }
+
+    /**
+     * Binds the unpacker of a {@link StructField} to a handle that reads the field at {@code offset}
+     * bytes past the buffer's position without moving it. Primitive fields are read with the
+     * absolute {@link ByteBuffer} getters so they are never boxed.
+     *
+     * @param field The struct field to bind.
+     * @param type The declared type of the field.
+     * @param offset The offset of the field from the start of the struct.
+     * @return A handle of type {@code (ByteBuffer)FieldType}.
+     */
+    private static MethodHandle bindReader(StructField field, Class<?> type, int offset)
+            throws ReflectiveOperationException {
+        final MethodHandle position = MethodHandles.filterReturnValue(
+                LOOKUP.findVirtual(ByteBuffer.class, "position", MethodType.methodType(int.class)),
+                MethodHandles.insertArguments(
+                        LOOKUP.findStatic(
+                                Integer.class,
+                                "sum",
+                                MethodType.methodType(int.class, int.class, int.class)),
+                        1,
+                        offset));
+        final MethodHandle getter;
+        if (type == boolean.class) {
+            getter = LOOKUP.findStatic(
+                    ProceduralStructGenerator.class,
+                    "getBoolean",
+                    MethodType.methodType(boolean.class, ByteBuffer.class, int.class));
+        } else if (type.isPrimitive()) {
+            final String name = type == byte.class
+                    ? "get"
+                    : "get" + Character.toUpperCase(type.getName().charAt(0)) + type.getName().substring(1);
+            getter = LOOKUP.findVirtual(
+                    ByteBuffer.class, name, MethodType.methodType(type, int.class));
+        } else {
+            return MethodHandles.insertArguments(
+                            LOOKUP.findStatic(
+                                    ProceduralStructGenerator.class,
+                                    "unpackAt",
+                                    MethodType.methodType(
+                                            Object.class, Unpacker.class, int.class, ByteBuffer.class)),
+                            0,
+                            field.unpacker(),
+                            offset)
+                    .asType(MethodType.methodType(type, ByteBuffer.class));
+        }
+        return MethodHandles.permuteArguments(
+                MethodHandles.filterArguments(getter, 1, position),
+                MethodType.methodType(type, ByteBuffer.class),
+                0,
+                0);
+    }
+
     /** A utility for building schema syntax in a procedural manner. */
     @SuppressWarnings("PMD.AvoidStringBufferField")
     public static class SchemaBuilder {
@@ -549,6 +1252,102 @@ public final class ProceduralStructGenerator {
         };
     }
 
+    /**
+     * Returns a {@link Struct} for a record or enum that is only generated the first time it's used,
+     * keeping generation off of class init. Assign it to the type's {@code struct} field in place of
+     * {@link #genRecord(Class)} or {@link #genEnum(Class)}.
+     *
+     * @param <T> The type of the class.
+     * @param clazz The record or enum class.
+     * @return The lazy struct.
+     * @throws IllegalArgumentException If the class is not a record or enum.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static <T> Struct<T> lazyStruct(Class<T> clazz) {
+        if (clazz.isRecord()) {
+            return new LazyStruct<>(clazz, () -> (Struct<T>) genRecord(clazz.asSubclass(Record.class)));
+        } else if (clazz.isEnum()) {
+            return new LazyStruct<>(clazz, () -> (Struct<T>) genEnum((Class) clazz));
+        }
+        throw new IllegalArgumentException("Not a record or enum: " + clazz.getSimpleName());
+    }
+
+    private static final class LazyStruct<T> implements Struct<T> {
+        private final Class<T> m_typeClass;
+        private final Supplier<Struct<T>> m_generator;
+        private volatile Struct<T> m_struct;
+
+        private LazyStruct(Class<T> typeClass, Supplier<Struct<T>> generator) {
+            m_typeClass = typeClass;
+            m_generator = generator;
+        }
+
+        // racing threads get the same struct, the registry keeps the first one generated
+        private Struct<T> get() {
+            Struct<T> struct = m_struct;
+            if (struct == null) {
+                struct = m_generator.get();
+                m_struct = struct;
+            }
+            return struct;
+        }
+
+        @Override
+        public Class<T> getTypeClass() {
+            return m_typeClass;
+        }
+
+        @Override
+        public String getTypeName() {
+            return get().getTypeName();
+        }
+
+        @Override
+        public int getSize() {
+            return get().getSize();
+        }
+
+        @Override
+        public String getSchema() {
+            return get().getSchema();
+        }
+
+        @Override
+        public Struct<?>[] getNested() {
+            return get().getNested();
+        }
+
+        @Override
+        public T unpack(ByteBuffer buffer) {
+            return get().unpack(buffer);
+        }
+
+        @Override
+        public void unpackInto(T out, ByteBuffer buffer) {
+            get().unpackInto(out, buffer);
+        }
+
+        @Override
+        public void pack(ByteBuffer buffer, T value) {
+            get().pack(buffer, value);
+        }
+
+        @Override
+        public boolean isImmutable() {
+            return get().isImmutable();
+        }
+
+        @Override
+        public boolean isCloneable() {
+            return get().isCloneable();
+        }
+
+        @Override
+        public T clone(T obj) throws CloneNotSupportedException {
+            return get().clone(obj);
+        }
+    }
+
     private abstract static class ProcStruct<T> implements Struct<T> {
         protected final Class<T> typeClass;
         protected final List<StructField> fields;
@@ -566,12 +1365,12 @@ public final class ProceduralStructGenerator {
 
             this.size = fields.stream().mapToInt(StructField::size).sum();
             this.isImmutable = fields.stream().allMatch(StructField::immutable);
+            // nested structs shared between fields are only loaded once
             this.nested = fields.stream()
                     .map(StructField::structsToLoad)
                     .flatMap(Collection::stream)
+                    .collect(Collectors.toCollection(LinkedHashSet::new))
                     .toArray(Struct<?>[]::new);
-
-            ProceduralStructGenerator.customStructTypeMap.put(typeClass, this);
         }
 
         @Override
@@ -629,20 +1428,82 @@ public final class ProceduralStructGenerator {
         }
     }
 
+    /**
+     * Resolves the canonical constructor of a record once and adapts it into a single handle that
+     * decodes every component straight from a {@link ByteBuffer}. Each component is read at its
+     * fixed offset from the buffer's position, ignored components are passed their default value.
+     *
+     * @param recordClass The class of the record.
+     * @param components The components of the record.
+     * @param fields The struct fields of the components that aren't ignored, in order.
+     * @return A handle of type {@code (ByteBuffer)Object} that doesn't move the buffer's position,
+     *     or null if the constructor couldn't be accessed.
+     */
+    @SuppressWarnings("PMD.AvoidAccessibilityAlteration")
+    private static MethodHandle compileDecoder(
+            Class<? extends Record> recordClass,
+            RecordComponent[] components,
+            List<StructField> fields) {
+        final Class<?>[] argTypes = new Class<?>[components.length];
+        for (int i = 0; i < components.length; i++) {
+            argTypes[i] = components[i].getType();
+        }
+        try {
+            final Constructor<?> constructor = recordClass.getDeclaredConstructor(argTypes);
+            constructor.setAccessible(true);
+            MethodHandle decoder = LOOKUP.unreflectConstructor(constructor);
+            int fieldIndex = 0;
+            int offset = 0;
+            for (int i = 0; i < components.length; i++) {
+                final MethodHandle reader;
+                if (shouldIgnore(components[i])) {
+                    reader = MethodHandles.dropArguments(
+                            MethodHandles.zero(argTypes[i]), 0, ByteBuffer.class);
+                } else {
+                    final StructField field = fields.get(fieldIndex++);
+                    reader = bindReader(field, argTypes[i], offset);
+                    offset += field.size();
+                }
+                decoder = MethodHandles.filterArguments(decoder, i, reader);
+            }
+            final MethodType decoderType = MethodType.methodType(Object.class, ByteBuffer.class);
+            return MethodHandles.permuteArguments(
+                    decoder.asType(decoder.type().changeReturnType(Object.class)),
+                    decoderType,
+                    new int[components.length]);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            System.out.println(
+                    "[WARNING] Could not access record constructor: "
+                            + recordClass.getSimpleName()
+                            + "\n    "
+                            + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Generates a {@link Struct} for the given {@link Record} class. If a {@link Struct} cannot be
      * generated from the {@link Record}, the errors encountered will be printed and a no-op {@link
      * Struct} will be returned.
      *
+     * <p>If the record is marked with {@link GenerateStruct} the struct generated at compile time is
+     * returned instead, this avoids reflection during class init and while packing.
+     *
      * @param <R> The type of the record.
      * @param recordClass The class of the record.
      * @return The generated struct.
      */
-    @SuppressWarnings({ "unchecked", "PMD.AvoidAccessibilityAlteration" })
+    @SuppressWarnings("PMD.AvoidAccessibilityAlteration")
     public static <R extends Record> Struct<R> genRecord(final Class<R> recordClass) {
+        final Optional<Struct<R>> existing =
+                registered(recordClass).or(() -> loadGeneratedStruct(recordClass));
+        if (existing.isPresent()) {
+            return existing.get();
+        }
         final RecordComponent[] components = recordClass.getRecordComponents();
         final SchemaBuilder schemaBuilder = new SchemaBuilder();
         final ArrayList<StructField> fields = new ArrayList<>();
+        final ArrayList<Method> accessors = new ArrayList<>();
 
         for (final RecordComponent component : components) {
             if (shouldIgnore(component)) {
@@ -650,6 +1511,7 @@ public final class ProceduralStructGenerator {
             }
             component.getAccessor().setAccessible(true);
             fields.add(StructField.fromRecordComponent(component));
+            accessors.add(component.getAccessor());
         }
 
         if (fields.stream().anyMatch(f -> f == null)) {
@@ -657,81 +1519,180 @@ public final class ProceduralStructGenerator {
         }
         fields.forEach(schemaBuilder::addField);
 
-        return new ProcStruct<>(recordClass, fields, schemaBuilder.build()) {
+        final FieldPacker[] fieldPackers = new FieldPacker[fields.size()];
+        for (int i = 0; i < fieldPackers.length; i++) {
+            try {
+                fieldPackers[i] = bindPacker(fields.get(i), LOOKUP.unreflect(accessors.get(i)), true);
+            } catch (IllegalAccessException e) {
+                System.out.println(
+                        "[WARNING] Could not access record component: "
+                                + recordClass.getSimpleName()
+                                + "#"
+                                + accessors.get(i).getName()
+                                + "\n    "
+                                + e.getMessage());
+                return noopStruct(recordClass);
+            }
+        }
+
+        final MethodHandle decoder = compileDecoder(recordClass, components, fields);
+
+        final Struct<R> struct = new ProcStruct<>(recordClass, fields, schemaBuilder.build()) {
             @Override
             public void pack(ByteBuffer buffer, R value) {
-                boolean failed = false;
                 int startingPosition = buffer.position();
-                for (int i = 0; i < components.length; i++) {
-                    if (fields.get(i).packer() instanceof DoublePacker doublePacker) {
-                        try {
-                            double d = (double) components[i].getAccessor().invoke(value);
-                            doublePacker.packDouble(buffer, d);
-                            continue;
-                        } catch (IllegalAccessException
-                                | IllegalArgumentException
-                                | InvocationTargetException e) {
-                            System.out.println(
-                                    "[WARNING] Could not pack record component: "
-                                            + recordClass.getSimpleName()
-                                            + "#"
-                                            + components[i].getName()
-                                            + "\n    "
-                                            + e.getMessage());
-                            failed = true;
-                            break;
-                        }
-                    }
-                    Packer<Object> packer = (Packer<Object>) fields.get(i).packer();
+                for (int i = 0; i < fieldPackers.length; i++) {
                     try {
-                        Object componentValue = components[i].getAccessor().invoke(value);
-                        if (componentValue == null) {
-                            throw new IllegalArgumentException("Component is null");
-                        }
-                        packer.pack(buffer, componentValue);
-                    } catch (IllegalAccessException
-                            | IllegalArgumentException
-                            | InvocationTargetException e) {
+                        fieldPackers[i].pack(buffer, value);
+                    } catch (RuntimeException e) {
                         System.out.println(
                                 "[WARNING] Could not pack record component: "
                                         + recordClass.getSimpleName()
                                         + "#"
-                                        + components[i].getName()
+                                        + accessors.get(i).getName()
                                         + "\n    "
                                         + e.getMessage());
-                        failed = true;
-                        break;
+                        buffer.position(startingPosition).put(new byte[this.getSize()]);
+                        return;
                     }
                 }
-                if (failed) {
-                    buffer.put(startingPosition, new byte[this.getSize()]);
-                }
             }
 
             @Override
             public R unpack(ByteBuffer buffer) {
+                if (decoder == null) {
+                    return null;
+                }
                 try {
-                    Object[] args = new Object[components.length];
-                    Class<?>[] argTypes = new Class<?>[components.length];
-                    for (int i = 0; i < components.length; i++) {
-                        args[i] = fields.get(i).unpacker().unpack(buffer);
-                        argTypes[i] = components[i].getType();
-                    }
-                    return recordClass.getConstructor(argTypes).newInstance(args);
-                } catch (InstantiationException
-                        | IllegalAccessException
-                        | InvocationTargetException
-                        | NoSuchMethodException
-                        | SecurityException e) {
-                    System.err.println(
-                            "Could not unpack record: "
+                    final Object value = (Object) decoder.invokeExact(buffer);
+                    buffer.position(buffer.position() + this.getSize());
+                    return recordClass.cast(value);
+                } catch (RuntimeException e) {
+                    System.out.println(
+                            "[WARNING] Could not unpack record: "
                                     + recordClass.getSimpleName()
                                     + "\n    "
                                     + e.getMessage());
                     return null;
+                } catch (Throwable t) {
+                    throw rethrow(t);
                 }
             }
         };
+        return register(recordClass, struct);
+    }
+
+    /**
+     * Generates a {@link StructView} for the given {@link Record} class, a flyweight that reads the
+     * record's fields straight out of packed buffers without unpacking it. The view uses the same
+     * field offsets as {@link #genRecord(Class)}.
+     *
+     * <p>Fields are addressed by record component name. A nested struct field is read by pointing a
+     * view of the nested struct at it, from {@link #genView(Struct)} if the nested type isn't a
+     * record.
+     *
+     * @param <R> The type of the record.
+     * @param recordClass The class of the record.
+     * @return The generated view, pointed at nothing.
+     * @throws IllegalArgumentException If a struct can't be generated from the record.
+     */
+    public static <R extends Record> StructView<R> genView(final Class<R> recordClass) {
+        final HashMap<String, Integer> offsets = new HashMap<>();
+        int offset = 0;
+        for (final RecordComponent component : recordClass.getRecordComponents()) {
+            if (shouldIgnore(component)) {
+                continue;
+            }
+            final StructField field = StructField.fromRecordComponent(component);
+            if (field == null) {
+                throw new IllegalArgumentException(
+                        "Could not generate view: "
+                                + recordClass.getSimpleName()
+                                + "#"
+                                + component.getName());
+            }
+            offsets.put(component.getName(), offset);
+            offset += field.size();
+        }
+        return new StructView<>(genRecord(recordClass), Map.copyOf(offsets));
+    }
+
+    /**
+     * Generates a {@link StructView} for any {@link Struct}, with field offsets laid out from its
+     * schema. This covers structs that aren't generated from records, like the ones of WPILib's
+     * geometry classes, so the {@code Pose2d} field of a packed record can be read through a view
+     * of {@code Pose2d.struct}.
+     *
+     * <p>Nested struct fields are sized by the struct of the same type name in {@link
+     * Struct#getNested()}, array fields are addressed by their name without the size.
+     *
+     * @param <T> The type of the struct.
+     * @param struct The struct to view.
+     * @return The generated view, pointed at nothing.
+     * @throws IllegalArgumentException If the schema can't be laid out, like one with bit-fields.
+     */
+    public static <T> StructView<T> genView(final Struct<T> struct) {
+        final HashMap<String, Integer> nestedSizes = new HashMap<>();
+        for (final Struct<?> nested : struct.getNested()) {
+            nestedSizes.put(nested.getTypeName(), nested.getSize());
+        }
+        final HashMap<String, Integer> offsets = new HashMap<>();
+        int offset = 0;
+        for (String declaration : struct.getSchema().split(";")) {
+            declaration = declaration.strip();
+            if (declaration.isEmpty()) {
+                continue;
+            }
+            // an inline enum is stored as its integer type
+            if (declaration.startsWith("enum") && declaration.indexOf('{') >= 0) {
+                declaration = declaration.substring(declaration.indexOf('}') + 1).strip();
+            }
+            final String[] parts = declaration.split("\\s+", 2);
+            if (parts.length != 2 || declaration.indexOf(':') >= 0) {
+                throw new IllegalArgumentException(
+                        "Could not generate view: "
+                                + struct.getTypeName()
+                                + " ("
+                                + declaration
+                                + ")");
+            }
+            String name = parts[1];
+            int count = 1;
+            final int bracket = name.indexOf('[');
+            if (bracket >= 0) {
+                count = Integer.parseInt(name.substring(bracket + 1, name.indexOf(']')).strip());
+                name = name.substring(0, bracket);
+            }
+            final int size = schemaTypeSize(parts[0], nestedSizes);
+            if (size < 0) {
+                throw new IllegalArgumentException(
+                        "Could not generate view: "
+                                + struct.getTypeName()
+                                + " (unknown type "
+                                + parts[0]
+                                + ")");
+            }
+            offsets.put(name.strip(), offset);
+            offset += size * count;
+        }
+        if (offset != struct.getSize()) {
+            throw new IllegalArgumentException(
+                    "Could not generate view: "
+                            + struct.getTypeName()
+                            + " (schema doesn't match its size)");
+        }
+        return new StructView<>(struct, Map.copyOf(offsets));
+    }
+
+    /** The size of a schema type in bytes, -1 if it's neither a primitive nor a nested struct. */
+    private static int schemaTypeSize(String type, Map<String, Integer> nestedSizes) {
+        return switch (type) {
+            case "bool", "char", "int8", "uint8" -> 1;
+            case "int16", "uint16" -> 2;
+            case "int32", "uint32", "float", "float32" -> 4;
+            case "int64", "uint64", "double", "float64" -> 8;
+            default -> nestedSizes.getOrDefault(type, -1);
+        };
     }
 
     /**
@@ -739,17 +1700,24 @@ public final class ProceduralStructGenerator {
      * generated from the {@link Enum}, the errors encountered will be printed and a no-op {@link
      * Struct} will be returned.
      *
+     * <p>If the enum is marked with {@link GenerateStruct} the struct generated at compile time is
+     * returned instead, this avoids reflection during class init and while packing.
+     *
      * @param <E> The type of the enum.
      * @param enumClass The class of the enum.
      * @return The generated struct.
      */
-    @SuppressWarnings({ "unchecked", "PMD.AvoidAccessibilityAlteration" })
+    @SuppressWarnings("PMD.AvoidAccessibilityAlteration")
     public static <E extends Enum<E>> Struct<E> genEnum(Class<E> enumClass) {
+        final Optional<Struct<E>> existing =
+                registered(enumClass).or(() -> loadGeneratedStruct(enumClass));
+        if (existing.isPresent()) {
+            return existing.get();
+        }
         final E[] enumVariants = enumClass.getEnumConstants();
         final Field[] allEnumFields = enumClass.getDeclaredFields();
         final SchemaBuilder schemaBuilder = new SchemaBuilder();
         final SchemaBuilder.EnumFieldBuilder enumFieldBuilder = new SchemaBuilder.EnumFieldBuilder("variant");
-        final HashMap<Integer, E> enumMap = new HashMap<>();
         final ArrayList<StructField> fields = new ArrayList<>();
 
         if (enumVariants == null || enumVariants.length == 0) {
@@ -763,7 +1731,6 @@ public final class ProceduralStructGenerator {
             final int ordinal = constant.ordinal();
 
             enumFieldBuilder.addVariant(name, ordinal);
-            enumMap.put(ordinal, constant);
         }
         schemaBuilder.addEnumField(enumFieldBuilder);
         fields.add(
@@ -793,45 +1760,59 @@ public final class ProceduralStructGenerator {
             schemaBuilder.addField(fields.get(i));
         }
 
-        return new ProcStruct<>(enumClass, fields, schemaBuilder.build()) {
+        final FieldPacker[] fieldPackers = new FieldPacker[enumFields.size()];
+        for (int i = 0; i < fieldPackers.length; i++) {
+            try {
+                fieldPackers[i] =
+                        bindPacker(fields.get(i + 1), LOOKUP.unreflectGetter(enumFields.get(i)), false);
+            } catch (IllegalAccessException e) {
+                System.err.println(
+                        "Could not access enum field: "
+                                + enumClass.getSimpleName()
+                                + "#"
+                                + enumFields.get(i).getName()
+                                + "\n    "
+                                + e.getMessage());
+                return noopStruct(enumClass);
+            }
+        }
+
+        final byte[][] images = fields.stream().allMatch(StructField::immutable)
+                ? new byte[enumVariants.length][]
+                : null;
+
+        final ProcStruct<E> struct = new ProcStruct<>(enumClass, fields, schemaBuilder.build()) {
             @Override
             public void pack(ByteBuffer buffer, E value) {
-                boolean failed = false;
+                final byte[] image = images == null ? null : images[value.ordinal()];
+                if (image != null) {
+                    buffer.put(image);
+                    return;
+                }
                 int startingPosition = buffer.position();
                 buffer.put((byte) value.ordinal());
-                for (int i = 0; i < enumFields.size(); i++) {
-                    Packer<Object> packer = (Packer<Object>) fields.get(i + 1).packer();
-                    Field field = enumFields.get(i);
+                for (int i = 0; i < fieldPackers.length; i++) {
                     try {
-                        Object fieldValue = field.get(value);
-                        if (fieldValue == null) {
-                            throw new IllegalArgumentException("Field is null");
-                        }
-                        packer.pack(buffer, fieldValue);
-                    } catch (IllegalArgumentException | IllegalAccessException e) {
+                        fieldPackers[i].pack(buffer, value);
+                    } catch (RuntimeException e) {
                         System.err.println(
                                 "Could not pack enum field: "
                                         + enumClass.getSimpleName()
                                         + "#"
-                                        + field.getName()
+                                        + enumFields.get(i).getName()
                                         + "\n    "
                                         + e.getMessage());
-                        failed = true;
-                        break;
+                        buffer.position(startingPosition).put(new byte[this.getSize()]);
+                        return;
                     }
                 }
-                if (failed) {
-                    buffer.put(startingPosition, new byte[this.getSize()]);
-                }
             }
 
-            final byte[] m_spongeBuffer = new byte[this.getSize() - 1];
-
             @Override
             public E unpack(ByteBuffer buffer) {
                 int ordinal = buffer.get();
-                buffer.get(m_spongeBuffer);
-                return enumMap.getOrDefault(ordinal, null);
+                buffer.position(buffer.position() + this.getSize() - 1);
+                return ordinal >= 0 && ordinal < enumVariants.length ? enumVariants[ordinal] : null;
             }
 
             public boolean isCloneable() {
@@ -846,6 +1827,17 @@ public final class ProceduralStructGenerator {
                 return true;
             };
         };
+
+        // every field is immutable, so each variant always packs to the same bytes
+        if (images != null) {
+            for (final E variant : enumVariants) {
+                final ByteBuffer image =
+                        ByteBuffer.allocate(struct.getSize()).order(ByteOrder.LITTLE_ENDIAN);
+                struct.pack(image, variant);
+                images[variant.ordinal()] = image.array();
+            }
+        }
+        return register(enumClass, struct);
     }
 
     /**
@@ -853,13 +1845,20 @@ public final class ProceduralStructGenerator {
      * generated from the {@link Object}, the errors encountered will be printed and a no-op {@link
      * Struct} will be returned.
      *
+     * <p>The struct is registered for the class, later calls return the registered struct and ignore
+     * their supplier.
+     *
      * @param <O> The type of the object.
      * @param objectClass The class of the object.
      * @param objectSupplier A supplier for the object.
      * @return The generated struct.
      */
-    @SuppressWarnings({ "unchecked", "PMD.AvoidAccessibilityAlteration" })
+    @SuppressWarnings("PMD.AvoidAccessibilityAlteration")
     public static <O> Struct<O> genObject(Class<O> objectClass, Supplier<O> objectSupplier) {
+        final Optional<Struct<O>> existing = registered(objectClass);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
         final SchemaBuilder schemaBuilder = new SchemaBuilder();
         final Field[] allFields = List.of(objectClass.getDeclaredFields()).stream()
                 .filter(f -> !shouldIgnore(f) && !Modifier.isStatic(f.getModifiers()))
@@ -896,39 +1895,44 @@ public final class ProceduralStructGenerator {
                                     Packer.fromStruct(struct)));
                 });
 
-        return new ProcStruct<>(
+        final FieldPacker[] fieldPackers = new FieldPacker[allFields.length];
+        final FieldUnpacker[] fieldUnpackers = new FieldUnpacker[allFields.length];
+        for (int i = 0; i < fieldPackers.length; i++) {
+            try {
+                fieldPackers[i] = bindPacker(fields.get(i), LOOKUP.unreflectGetter(allFields[i]), false);
+            } catch (IllegalAccessException e) {
+                System.err.println(
+                        "Could not access object field: "
+                                + objectClass.getSimpleName()
+                                + "#"
+                                + allFields[i].getName()
+                                + "\n    "
+                                + e.getMessage());
+                return noopStruct(objectClass);
+            }
+            if (objectSupplier != null) {
+                try {
+                    fieldUnpackers[i] = bindUnpacker(fields.get(i), LOOKUP.unreflectSetter(allFields[i]));
+                } catch (IllegalAccessException e) {
+                    final String message = e.getMessage();
+                    fieldUnpackers[i] = (buffer, owner) -> {
+                        throw new IllegalArgumentException(message);
+                    };
+                }
+            }
+        }
+
+        final Struct<O> struct = new ProcStruct<>(
                 objectClass,
                 fields,
                 schemaBuilder.build() + parentStruct.map(Struct::getSchema).orElse("")) {
             @Override
             public void pack(ByteBuffer buffer, O value) {
-                boolean failed = false;
                 int startingPosition = buffer.position();
-                for (int i = 0; i < allFields.length; i++) {
-                    if (fields.get(i).packer() instanceof DoublePacker doublePacker) {
-                        try {
-                            doublePacker.packDouble(buffer, allFields[i].getDouble(value));
-                        } catch (IllegalArgumentException | IllegalAccessException e) {
-                            System.err.println(
-                                    "Could not pack object field: "
-                                            + objectClass.getSimpleName()
-                                            + "#"
-                                            + allFields[i].getName()
-                                            + "\n    "
-                                            + e.getMessage());
-                            failed = true;
-                            break;
-                        }
-                        continue;
-                    }
-                    Packer<Object> packer = (Packer<Object>) fields.get(i).packer();
+                for (int i = 0; i < fieldPackers.length; i++) {
                     try {
-                        Object fieldValue = allFields[i].get(value);
-                        if (fieldValue == null) {
-                            throw new IllegalArgumentException("Field is null");
-                        }
-                        packer.pack(buffer, fieldValue);
-                    } catch (IllegalArgumentException | IllegalAccessException e) {
+                        fieldPackers[i].pack(buffer, value);
+                    } catch (RuntimeException e) {
                         System.err.println(
                                 "Could not pack object field: "
                                         + objectClass.getSimpleName()
@@ -936,25 +1940,21 @@ public final class ProceduralStructGenerator {
                                         + allFields[i].getName()
                                         + "\n    "
                                         + e.getMessage());
-                        failed = true;
-                        break;
+                        buffer.position(startingPosition).put(new byte[this.getSize()]);
+                        return;
                     }
                 }
-                if (failed) {
-                    buffer.put(startingPosition, new byte[this.getSize()]);
-                }
             }
 
             @Override
             public O unpack(ByteBuffer buffer) {
                 try {
                     O obj = objectSupplier.get();
-                    for (int i = 0; i < allFields.length; i++) {
-                        Object fieldValue = fields.get(i).unpacker().unpack(buffer);
-                        allFields[i].set(obj, fieldValue);
+                    for (int i = 0; i < fieldUnpackers.length; i++) {
+                        fieldUnpackers[i].unpack(buffer, obj);
                     }
                     return obj;
-                } catch (IllegalArgumentException | IllegalAccessException e) {
+                } catch (RuntimeException e) {
                     System.err.println(
                             "Could not unpack object: "
                                     + objectClass.getSimpleName()
@@ -964,6 +1964,7 @@ public final class ProceduralStructGenerator {
                 }
             }
         };
+        return register(objectClass, struct);
     }
 
     /**
@@ -0,0 +1,88 @@
+package frc.robot.lib;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded lock free queue for handing values from exactly one producer thread to exactly one
+ * consumer thread, such as a worker thread and the main robot loop.
+ *
+ * <p>Values live in a preallocated ring, offering and polling never block or allocate. The head
+ * and tail are each written by only one side, so neither side ever retries or contends.
+ *
+ * @param <T> The type of the values in the queue.
+ */
+public class SpscQueue<T> {
+    private final Object[] m_values;
+    private final int m_mask;
+
+    /** The next sequence to write, only advanced by the producer. */
+    private final AtomicLong m_head = new AtomicLong();
+
+    /** The next sequence to read, only advanced by the consumer. */
+    private final AtomicLong m_tail = new AtomicLong();
+
+    /** The producer's last read of the tail and the consumer's of the head. */
+    private long m_cachedTail = 0;
+
+    private long m_cachedHead = 0;
+
+    /**
+     * Creates a new queue.
+     *
+     * @param capacity How many values the queue holds, rounded up to a power of two.
+     */
+    public SpscQueue(int capacity) {
+        final int size = Math.max(2, Integer.highestOneBit(capacity - 1) << 1);
+        m_values = new Object[size];
+        m_mask = size - 1;
+    }
+
+    /**
+     * Adds a value to the queue, should only be called by the producer thread.
+     *
+     * @param value The value to add, must not be null.
+     * @return False if the queue was full and the value was dropped.
+     */
+    public boolean offer(T value) {
+        final long head = m_head.get();
+        if (head - m_cachedTail > m_mask) {
+            m_cachedTail = m_tail.get();
+            if (head - m_cachedTail > m_mask) {
+                return false;
+            }
+        }
+        m_values[(int) head & m_mask] = value;
+        m_head.lazySet(head + 1);
+        return true;
+    }
+
+    /**
+     * Removes the oldest value from the queue, should only be called by the consumer thread.
+     *
+     * @return The oldest value, or null if the queue is empty.
+     */
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        final long tail = m_tail.get();
+        if (tail == m_cachedHead) {
+            m_cachedHead = m_head.get();
+            if (tail == m_cachedHead) {
+                return null;
+            }
+        }
+        final int slot = (int) tail & m_mask;
+        final T value = (T) m_values[slot];
+        m_values[slot] = null;
+        m_tail.lazySet(tail + 1);
+        return value;
+    }
+
+    /**
+     * Gets roughly how many values are in the queue, exact only when neither side is active.
+     *
+     * @return The number of values.
+     */
+    public int size() {
+        return (int) Math.max(0, m_head.get() - m_tail.get());
+    }
+}
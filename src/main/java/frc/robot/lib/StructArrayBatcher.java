@@ -0,0 +1,94 @@
+package frc.robot.lib;
+
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.RawPublisher;
+import edu.wpi.first.util.struct.Struct;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Collects values over a cycle and publishes them as a single struct array to NetworkTables.
+ *
+ * <p>Values are packed straight into a reused buffer that only ever grows, so publishing a cycle
+ * allocates nothing once the buffer has grown to fit the largest batch. The topic has the same type
+ * string as a {@link edu.wpi.first.networktables.StructArrayPublisher}, dashboards and logs decode
+ * it the same way.
+ *
+ * @param <T> The type of the values being published.
+ */
+public class StructArrayBatcher<T> implements AutoCloseable {
+    private final Struct<T> m_struct;
+    private final RawPublisher m_publisher;
+    private ByteBuffer m_buffer;
+    private int m_count = 0;
+
+    /**
+     * Creates a new batcher publishing to a topic.
+     *
+     * @param table The table to publish the topic under.
+     * @param name The name of the topic.
+     * @param struct The struct to pack values with.
+     * @param initialCapacity How many values the buffer fits before it grows.
+     */
+    public StructArrayBatcher(
+            NetworkTable table, String name, Struct<T> struct, int initialCapacity) {
+        m_struct = struct;
+        table.getInstance().addSchema(struct);
+        m_publisher = table.getRawTopic(name).publish(struct.getTypeString() + "[]");
+        m_buffer = ByteBuffer.allocate(Math.max(1, initialCapacity) * struct.getSize())
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Creates a new batcher publishing to a topic.
+     *
+     * @param table The table to publish the topic under.
+     * @param name The name of the topic.
+     * @param struct The struct to pack values with.
+     */
+    public StructArrayBatcher(NetworkTable table, String name, Struct<T> struct) {
+        this(table, name, struct, 8);
+    }
+
+    /**
+     * Packs a value into the current batch.
+     *
+     * @param value The value to add.
+     */
+    public void add(T value) {
+        if (m_buffer.remaining() < m_struct.getSize()) {
+            final ByteBuffer grown = ByteBuffer.allocate(
+                            Math.max(m_buffer.capacity() * 2, m_buffer.position() + m_struct.getSize()))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            m_buffer.flip();
+            grown.put(m_buffer);
+            m_buffer = grown;
+        }
+        m_struct.pack(m_buffer, value);
+        m_count++;
+    }
+
+    /**
+     * Gets how many values are in the current batch.
+     *
+     * @return The number of values.
+     */
+    public int size() {
+        return m_count;
+    }
+
+    /**
+     * Publishes the current batch as one struct array and starts a new batch. An empty batch is
+     * published as an empty array so stale values don't linger.
+     */
+    public void publish() {
+        m_publisher.set(m_buffer, 0, m_buffer.position());
+        m_buffer.clear();
+        m_count = 0;
+    }
+
+    @Override
+    public void close() {
+        m_publisher.close();
+    }
+}
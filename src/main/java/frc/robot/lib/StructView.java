@@ -0,0 +1,340 @@
+package frc.robot.lib;
+
+import edu.wpi.first.util.struct.Struct;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+
+/**
+ * A flyweight that reads the fields of a packed struct straight out of a {@link ByteBuffer} without
+ * building the value it represents. A single view can be moved across a buffer of back to back
+ * structs, so iterating thousands of packed values allocates nothing.
+ *
+ * <p>Views are created with {@link ProceduralStructGenerator#genView(Class)} for records or {@link
+ * ProceduralStructGenerator#genView(Struct)} for any other struct, field offsets are the same ones
+ * the {@link Struct} packs with. Field getters take the byte offset of the field so hot loops can
+ * resolve it once with {@link #offsetOf(String)}, the name based overloads look the offset up on
+ * every call.
+ *
+ * <p>Nested struct fields, like a {@code Pose2d}, are read by pointing a view of the nested struct at
+ * them with {@link #view(String, StructView)}.
+ *
+ * <p>A view is not thread safe, give each thread its own with {@link #copy()}.
+ *
+ * @param <T> The type of the struct being viewed.
+ */
+public final class StructView<T> {
+    private final Struct<T> m_struct;
+    private final Map<String, Integer> m_offsets;
+    private final int m_size;
+
+    private ByteBuffer m_buffer = ByteBuffer.allocate(0).order(ByteOrder.LITTLE_ENDIAN);
+    private int m_start;
+    private int m_end;
+    private int m_base;
+
+    StructView(Struct<T> struct, Map<String, Integer> offsets) {
+        m_struct = struct;
+        m_offsets = offsets;
+        m_size = struct.getSize();
+    }
+
+    /**
+     * Gets the struct this view reads.
+     *
+     * @return The struct.
+     */
+    public Struct<T> getStruct() {
+        return m_struct;
+    }
+
+    /**
+     * Gets the size of a single packed struct in bytes.
+     *
+     * @return The size of the struct.
+     */
+    public int getSize() {
+        return m_size;
+    }
+
+    /**
+     * Points this view at the packed structs starting at the buffer's current position. The buffer's
+     * position and limit are not modified by the view.
+     *
+     * @param buffer The buffer of packed structs.
+     * @return This view, pointed at the first struct.
+     */
+    public StructView<T> wrap(ByteBuffer buffer) {
+        m_buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        m_start = m_buffer.position();
+        m_end = m_buffer.limit();
+        m_base = m_start;
+        return this;
+    }
+
+    private StructView<T> rebase(ByteBuffer buffer, int base) {
+        m_buffer = buffer;
+        m_start = base;
+        m_end = base + m_size;
+        m_base = base;
+        return this;
+    }
+
+    /**
+     * Gets how many whole structs follow the position the view was wrapped at. A view pointed at a
+     * nested field with {@link #view(int, StructView)} covers only that field, so this is 1.
+     *
+     * @return The number of structs.
+     */
+    public int count() {
+        return m_size == 0 ? 0 : (m_end - m_start) / m_size;
+    }
+
+    /**
+     * Moves this view to the struct at {@code index}.
+     *
+     * @param index The index of the struct, relative to where the view was wrapped.
+     * @return This view.
+     */
+    public StructView<T> moveTo(int index) {
+        if (index < 0 || index >= count()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        m_base = m_start + index * m_size;
+        return this;
+    }
+
+    /**
+     * Gets the byte offset of a field from the start of the struct.
+     *
+     * @param field The name of the field, as it appears in the schema.
+     * @return The offset of the field.
+     * @throws IllegalArgumentException If the struct has no field with that name.
+     */
+    public int offsetOf(String field) {
+        final Integer offset = m_offsets.get(field);
+        if (offset == null) {
+            throw new IllegalArgumentException("No such field: " + field);
+        }
+        return offset;
+    }
+
+    /**
+     * Reads a {@code long} field of the current struct.
+     *
+     * @param offset The offset of the field, from {@link #offsetOf(String)}.
+     * @return The value of the field.
+     */
+    public long getLong(int offset) {
+        return m_buffer.getLong(m_base + offset);
+    }
+
+    /**
+     * Reads a {@code int} field of the current struct.
+     *
+     * @param offset The offset of the field, from {@link #offsetOf(String)}.
+     * @return The value of the field.
+     */
+    public int getInt(int offset) {
+        return m_buffer.getInt(m_base + offset);
+    }
+
+    /**
+     * Reads a {@code short} field of the current struct.
+     *
+     * @param offset The offset of the field, from {@link #offsetOf(String)}.
+     * @return The value of the field.
+     */
+    public short getShort(int offset) {
+        return m_buffer.getShort(m_base + offset);
+    }
+
+    /**
+     * Reads a {@code byte} field of the current struct. Bytes are packed as {@code uint8}, values above 127 read as negative.
+     *
+     * @param offset The offset of the field, from {@link #offsetOf(String)}.
+     * @return The value of the field.
+     */
+    public byte getByte(int offset) {
+        return m_buffer.get(m_base + offset);
+    }
+
+    /**
+     * Reads a {@code double} field of the current struct.
+     *
+     * @param offset The offset of the field, from {@link #offsetOf(String)}.
+     * @return The value of the field.
+     */
+    public double getDouble(int offset) {
+        return m_buffer.getDouble(m_base + offset);
+    }
+
+    /**
+     * Reads a {@code float} field of the current struct.
+     *
+     * @param offset The offset of the field, from {@link #offsetOf(String)}.
+     * @return The value of the field.
+     */
+    public float getFloat(int offset) {
+        return m_buffer.getFloat(m_base + offset);
+    }
+
+    /**
+     * Reads a {@code boolean} field of the current struct. Any nonzero byte is true.
+     *
+     * @param offset The offset of the field, from {@link #offsetOf(String)}.
+     * @return The value of the field.
+     */
+    public boolean getBoolean(int offset) {
+        return m_buffer.get(m_base + offset) != 0;
+    }
+
+    /**
+     * Reads a {@code char} field of the current struct. Chars are packed as {@code uint16}.
+     *
+     * @param offset The offset of the field, from {@link #offsetOf(String)}.
+     * @return The value of the field.
+     */
+    public char getChar(int offset) {
+        return m_buffer.getChar(m_base + offset);
+    }
+
+    /**
+     * Reads a {@code long} field of the current struct by name, see {@link #getLong(int)}.
+     *
+     * @param field The name of the field.
+     * @return The value of the field.
+     * @throws IllegalArgumentException If the struct has no field with that name.
+     */
+    public long getLong(String field) {
+        return getLong(offsetOf(field));
+    }
+
+    /**
+     * Reads a {@code int} field of the current struct by name, see {@link #getInt(int)}.
+     *
+     * @param field The name of the field.
+     * @return The value of the field.
+     * @throws IllegalArgumentException If the struct has no field with that name.
+     */
+    public int getInt(String field) {
+        return getInt(offsetOf(field));
+    }
+
+    /**
+     * Reads a {@code short} field of the current struct by name, see {@link #getShort(int)}.
+     *
+     * @param field The name of the field.
+     * @return The value of the field.
+     * @throws IllegalArgumentException If the struct has no field with that name.
+     */
+    public short getShort(String field) {
+        return getShort(offsetOf(field));
+    }
+
+    /**
+     * Reads a {@code byte} field of the current struct by name, see {@link #getByte(int)}.
+     *
+     * @param field The name of the field.
+     * @return The value of the field.
+     * @throws IllegalArgumentException If the struct has no field with that name.
+     */
+    public byte getByte(String field) {
+        return getByte(offsetOf(field));
+    }
+
+    /**
+     * Reads a {@code double} field of the current struct by name, see {@link #getDouble(int)}.
+     *
+     * @param field The name of the field.
+     * @return The value of the field.
+     * @throws IllegalArgumentException If the struct has no field with that name.
+     */
+    public double getDouble(String field) {
+        return getDouble(offsetOf(field));
+    }
+
+    /**
+     * Reads a {@code float} field of the current struct by name, see {@link #getFloat(int)}.
+     *
+     * @param field The name of the field.
+     * @return The value of the field.
+     * @throws IllegalArgumentException If the struct has no field with that name.
+     */
+    public float getFloat(String field) {
+        return getFloat(offsetOf(field));
+    }
+
+    /**
+     * Reads a {@code boolean} field of the current struct by name, see {@link #getBoolean(int)}.
+     *
+     * @param field The name of the field.
+     * @return The value of the field.
+     * @throws IllegalArgumentException If the struct has no field with that name.
+     */
+    public boolean getBoolean(String field) {
+        return getBoolean(offsetOf(field));
+    }
+
+    /**
+     * Reads a {@code char} field of the current struct by name, see {@link #getChar(int)}.
+     *
+     * @param field The name of the field.
+     * @return The value of the field.
+     * @throws IllegalArgumentException If the struct has no field with that name.
+     */
+    public char getChar(String field) {
+        return getChar(offsetOf(field));
+    }
+
+    /**
+     * Points another view at a nested struct field of the current struct, without copying. The
+     * nested view covers only the field, its {@link #count()} is 1 until it's wrapped again.
+     *
+     * @param <N> The type of the nested struct.
+     * @param offset The offset of the nested field.
+     * @param nested The view to point at the field.
+     * @return The nested view.
+     */
+    public <N> StructView<N> view(int offset, StructView<N> nested) {
+        return nested.rebase(m_buffer, m_base + offset);
+    }
+
+    /**
+     * Points another view at a nested struct field of the current struct by name, see {@link
+     * #view(int, StructView)}.
+     *
+     * @param <N> The type of the nested struct.
+     * @param field The name of the nested field.
+     * @param nested The view to point at the field.
+     * @return The nested view.
+     * @throws IllegalArgumentException If the struct has no field with that name.
+     */
+    public <N> StructView<N> view(String field, StructView<N> nested) {
+        return view(offsetOf(field), nested);
+    }
+
+    /**
+     * Unpacks the struct this view is pointed at.
+     *
+     * @return The unpacked value.
+     */
+    public T get() {
+        final int position = m_buffer.position();
+        m_buffer.position(m_base);
+        try {
+            return m_struct.unpack(m_buffer);
+        } finally {
+            m_buffer.position(position);
+        }
+    }
+
+    /**
+     * Creates a new view of the same struct, pointed at nothing.
+     *
+     * @return The new view.
+     */
+    public StructView<T> copy() {
+        return new StructView<>(m_struct, m_offsets);
+    }
+}
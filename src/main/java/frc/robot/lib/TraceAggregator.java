@@ -0,0 +1,210 @@
+package frc.robot.lib;
+
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.RawPublisher;
+import edu.wpi.first.networktables.StringArrayPublisher;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Merges the completed traces of every thread into one timeline, used by {@link Tracer}.
+ *
+ * <p>Each traced thread writes its completed spans into its own {@link SpanRing}, a single producer
+ * single consumer ring buffer, so producers never lock or contend with each other. Once per main
+ * loop cycle the thread that enabled aggregation drains every ring, sorts the spans by start time
+ * and publishes them as one struct array.
+ *
+ * <p>Spans are published to "Spans" as {@code TraceSpan} structs of a name id, a start timestamp and
+ * a duration, both in FPGA microseconds. The ids index into the "Names" string array, which is only
+ * republished when a new thread and trace path pair shows up.
+ */
+final class TraceAggregator {
+    private static final String SPAN_SCHEMA = "int32 id;int64 start;int64 duration";
+    private static final int SPAN_SIZE = 4 + 8 + 8;
+
+    /** The most spans published in one cycle, and the most each ring holds between drains. */
+    static final int MAX_SPANS = 4096;
+
+    /** How many bits of a sort key hold the span's index. */
+    private static final int INDEX_BITS = 12;
+
+    /**
+     * The completed spans of a single thread, written by that thread and read by the aggregator.
+     */
+    static final class SpanRing {
+        private final String m_threadName;
+        private final int m_mask;
+        private final String[] m_paths;
+        private final long[] m_starts;
+        private final long[] m_durations;
+
+        /** The next sequence to write, only advanced by the producer. */
+        private final AtomicLong m_head = new AtomicLong();
+
+        /** The next sequence to read, only advanced by the aggregator. */
+        private volatile long m_tail = 0;
+
+        /** The producer's last read of {@link #m_tail}, to avoid a volatile read per span. */
+        private long m_cachedTail = 0;
+
+        private final AtomicLong m_dropped = new AtomicLong();
+
+        /** The timeline id of each path, only touched by the aggregator. */
+        private final HashMap<String, Integer> m_ids = new HashMap<>();
+
+        private SpanRing(String threadName, int capacity) {
+            m_threadName = threadName;
+            m_mask = capacity - 1;
+            m_paths = new String[capacity];
+            m_starts = new long[capacity];
+            m_durations = new long[capacity];
+        }
+
+        /**
+         * Writes a completed span into the ring, dropping it if the ring is full. Must only be called
+         * by the ring's thread, never blocks or allocates.
+         *
+         * @param path The path of the trace.
+         * @param start The FPGA timestamp the trace started at in microseconds.
+         * @param duration How long the trace took in microseconds.
+         */
+        void offer(String path, long start, long duration) {
+            final long head = m_head.get();
+            if (head - m_cachedTail > m_mask) {
+                m_cachedTail = m_tail;
+                if (head - m_cachedTail > m_mask) {
+                    m_dropped.incrementAndGet();
+                    return;
+                }
+            }
+            final int slot = (int) head & m_mask;
+            m_paths[slot] = path;
+            m_starts[slot] = start;
+            m_durations[slot] = duration;
+            m_head.lazySet(head + 1);
+        }
+    }
+
+    private final ConcurrentLinkedQueue<SpanRing> m_newRings = new ConcurrentLinkedQueue<>();
+    private final ArrayList<SpanRing> m_rings = new ArrayList<>();
+
+    private final ArrayList<String> m_names = new ArrayList<>();
+    private boolean m_namesChanged = false;
+
+    private final int[] m_ids = new int[MAX_SPANS];
+    private final long[] m_starts = new long[MAX_SPANS];
+    private final long[] m_durations = new long[MAX_SPANS];
+    private final long[] m_order = new long[MAX_SPANS];
+    private final ByteBuffer m_buffer =
+            ByteBuffer.allocate(MAX_SPANS * SPAN_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    private final RawPublisher m_spansPublisher;
+    private final StringArrayPublisher m_namesPublisher;
+
+    /**
+     * Creates an aggregator publishing under a table.
+     *
+     * @param table The table to publish the timeline under.
+     */
+    TraceAggregator(NetworkTable table) {
+        table.getInstance().addSchema("struct:TraceSpan", "structschema", SPAN_SCHEMA);
+        m_spansPublisher = table.getRawTopic("Spans").publish("struct:TraceSpan[]");
+        m_namesPublisher = table.getStringArrayTopic("Names").publish();
+    }
+
+    /**
+     * Creates a ring for a thread, it's picked up by the next {@link #drain()}. Safe to call from any
+     * thread.
+     *
+     * @param threadName The name the thread's spans are published under.
+     * @return The thread's ring.
+     */
+    SpanRing register(String threadName) {
+        final SpanRing ring = new SpanRing(threadName, MAX_SPANS);
+        m_newRings.add(ring);
+        return ring;
+    }
+
+    /**
+     * Gets how many spans were dropped because a ring was full or the cycle had too many spans.
+     *
+     * @return The dropped span count.
+     */
+    long droppedSpans() {
+        long dropped = 0;
+        for (int i = 0; i < m_rings.size(); i++) {
+            dropped += m_rings.get(i).m_dropped.get();
+        }
+        return dropped;
+    }
+
+    /**
+     * Drains every ring and publishes their spans in start time order. Must only be called by the
+     * thread that owns the aggregator.
+     */
+    void drain() {
+        SpanRing newRing;
+        while ((newRing = m_newRings.poll()) != null) {
+            m_rings.add(newRing);
+        }
+
+        int count = 0;
+        long earliest = Long.MAX_VALUE;
+        for (int r = 0; r < m_rings.size(); r++) {
+            final SpanRing ring = m_rings.get(r);
+            final long head = ring.m_head.get();
+            for (long sequence = ring.m_tail; sequence < head; sequence++) {
+                final int slot = (int) sequence & ring.m_mask;
+                if (count == MAX_SPANS) {
+                    ring.m_dropped.incrementAndGet();
+                    ring.m_paths[slot] = null;
+                    continue;
+                }
+                m_ids[count] = idOf(ring, ring.m_paths[slot]);
+                m_starts[count] = ring.m_starts[slot];
+                m_durations[count] = ring.m_durations[slot];
+                earliest = Math.min(earliest, m_starts[count]);
+                ring.m_paths[slot] = null;
+                count++;
+            }
+            ring.m_tail = head;
+        }
+
+        // sort by start time without boxing, the low bits of each key keep the span's index
+        for (int i = 0; i < count; i++) {
+            m_order[i] = (m_starts[i] - earliest) << INDEX_BITS | i;
+        }
+        Arrays.sort(m_order, 0, count);
+
+        m_buffer.clear();
+        for (int i = 0; i < count; i++) {
+            final int span = (int) m_order[i] & (MAX_SPANS - 1);
+            m_buffer.putInt(m_ids[span]);
+            m_buffer.putLong(m_starts[span]);
+            m_buffer.putLong(m_durations[span]);
+        }
+        m_spansPublisher.set(m_buffer, 0, m_buffer.position());
+
+        if (m_namesChanged) {
+            m_namesPublisher.set(m_names.toArray(new String[0]));
+            m_namesChanged = false;
+        }
+    }
+
+    private int idOf(SpanRing ring, String path) {
+        final Integer id = ring.m_ids.get(path);
+        if (id != null) {
+            return id;
+        }
+        final int newId = m_names.size();
+        m_names.add(ring.m_threadName + "/" + path);
+        ring.m_ids.put(path, newId);
+        m_namesChanged = true;
+        return newId;
+    }
+}
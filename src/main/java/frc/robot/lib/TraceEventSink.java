@@ -0,0 +1,249 @@
+package frc.robot.lib;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Streams {@link Tracer} begin and end events into rotating Chrome trace-event JSON files, which
+ * can be opened in Perfetto or {@code chrome://tracing} to view a flame chart of a whole match.
+ *
+ * <p>Traced threads only copy an event into a preallocated ring buffer, a background thread formats
+ * and writes the events. If the writer falls behind and the ring fills up events are dropped rather
+ * than ever blocking a traced thread.
+ *
+ * <p>Every file starts with the names of the threads seen so far, so each file can be opened on its
+ * own. If writing fails, events are dropped for a while before opening a new file is retried.
+ */
+final class TraceEventSink {
+    static final byte BEGIN = 'B';
+    static final byte END = 'E';
+    static final byte THREAD_NAME = 'M';
+
+    private static final long FILE_BYTES = 32L * 1024 * 1024;
+    private static final int MAX_FILES = 8;
+    private static final long IDLE_PARK_NANOS = 10_000_000L;
+    private static final long RETRY_NANOS = 10_000_000_000L;
+
+    private final int m_mask;
+    private final String[] m_names;
+    private final long[] m_timestamps;
+    private final long[] m_threadIds;
+    private final byte[] m_phases;
+
+    /**
+     * The sequence each slot was last published with, a slot is readable once its sequence matches
+     * the reader's position.
+     */
+    private final AtomicLongArray m_published;
+
+    private final AtomicLong m_head = new AtomicLong();
+    private final AtomicLong m_dropped = new AtomicLong();
+    private volatile long m_tail = 0;
+
+    private final Path m_directory;
+    private final String m_filePrefix;
+    private final ArrayDeque<Path> m_files = new ArrayDeque<>();
+    private final StringBuilder m_line = new StringBuilder(128);
+    private Writer m_writer;
+    private long m_fileBytes;
+    private int m_fileIndex = 0;
+
+    /** The name of every thread seen so far by id, written at the top of each new file. */
+    private final Map<Long, String> m_threadNames = new HashMap<>();
+
+    /** If writing failed, events are dropped until {@link #RETRY_NANOS} after {@link #m_failedAt}. */
+    private boolean m_failed = false;
+
+    private long m_failedAt = 0;
+
+    /**
+     * Creates a sink and starts its writer thread.
+     *
+     * @param directory The directory to write trace files to.
+     * @param capacity How many events the ring holds, rounded up to a power of two.
+     */
+    TraceEventSink(Path directory, int capacity) {
+        final int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        m_mask = size - 1;
+        m_names = new String[size];
+        m_timestamps = new long[size];
+        m_threadIds = new long[size];
+        m_phases = new byte[size];
+        m_published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            m_published.set(i, -1);
+        }
+        m_directory = directory;
+        m_filePrefix = "trace-" + System.currentTimeMillis() + "-";
+
+        final Thread writer = new Thread(this::run, "TracerEventWriter");
+        writer.setDaemon(true);
+        writer.setPriority(Thread.MIN_PRIORITY);
+        writer.start();
+    }
+
+    /**
+     * Copies an event into the ring, dropping it if the ring is full. Safe to call from any thread
+     * and never blocks or allocates.
+     *
+     * @param phase {@link #BEGIN}, {@link #END} or {@link #THREAD_NAME}.
+     * @param name The name of the trace, or the thread for {@link #THREAD_NAME}.
+     * @param timestamp The FPGA timestamp of the event in microseconds.
+     * @param threadId The id of the thread the event happened on.
+     */
+    void emit(byte phase, String name, long timestamp, long threadId) {
+        long sequence;
+        do {
+            sequence = m_head.get();
+            if (sequence - m_tail > m_mask) {
+                m_dropped.incrementAndGet();
+                return;
+            }
+        } while (!m_head.compareAndSet(sequence, sequence + 1));
+        final int slot = (int) sequence & m_mask;
+        m_names[slot] = name;
+        m_timestamps[slot] = timestamp;
+        m_threadIds[slot] = threadId;
+        m_phases[slot] = phase;
+        m_published.lazySet(slot, sequence);
+    }
+
+    /**
+     * Gets how many events were dropped because the ring was full or writing failed.
+     *
+     * @return The dropped event count.
+     */
+    long droppedEvents() {
+        return m_dropped.get();
+    }
+
+    private void run() {
+        long tail = m_tail;
+        while (true) {
+            final int slot = (int) tail & m_mask;
+            if (m_published.get(slot) != tail) {
+                flush();
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            final String name = m_names[slot];
+            final long timestamp = m_timestamps[slot];
+            final long threadId = m_threadIds[slot];
+            final byte phase = m_phases[slot];
+            m_names[slot] = null;
+            tail++;
+            m_tail = tail;
+            write(phase, name, timestamp, threadId);
+        }
+    }
+
+    private void write(byte phase, String name, long timestamp, long threadId) {
+        if (m_failed && System.nanoTime() - m_failedAt < RETRY_NANOS) {
+            m_dropped.incrementAndGet();
+        } else {
+            m_failed = false;
+            try {
+                if (m_writer == null || m_fileBytes >= FILE_BYTES) {
+                    rotate();
+                }
+                writeLine(phase, name, timestamp, threadId);
+            } catch (IOException e) {
+                m_dropped.incrementAndGet();
+                fail("[Tracer] Could not write trace events: " + e.getMessage());
+            }
+        }
+        // remembered after writing so a new file doesn't name the thread twice
+        if (phase == THREAD_NAME) {
+            m_threadNames.put(threadId, name);
+        }
+    }
+
+    private void writeLine(byte phase, String name, long timestamp, long threadId) throws IOException {
+        final StringBuilder line = m_line;
+        line.setLength(0);
+        line.append("{\"name\":\"");
+        escape(line, phase == THREAD_NAME ? "thread_name" : name);
+        line.append("\",\"ph\":\"").append((char) phase).append("\",\"pid\":1,\"tid\":").append(threadId);
+        if (phase == THREAD_NAME) {
+            line.append(",\"args\":{\"name\":\"");
+            escape(line, name);
+            line.append("\"}");
+        } else {
+            line.append(",\"ts\":").append(timestamp);
+        }
+        line.append("},\n");
+        m_writer.append(line);
+        m_fileBytes += line.length();
+    }
+
+    /** Reports a write failure and drops events until it's time to retry. */
+    private void fail(String message) {
+        DriverStation.reportError(message, false);
+        if (m_writer != null) {
+            try {
+                m_writer.close();
+            } catch (IOException e) {
+                // the file is already broken, nothing else to do with it
+            }
+            m_writer = null;
+        }
+        m_failed = true;
+        m_failedAt = System.nanoTime();
+    }
+
+    private static void escape(StringBuilder line, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\');
+            }
+            line.append(c >= ' ' ? c : ' ');
+        }
+    }
+
+    private void rotate() throws IOException {
+        if (m_writer != null) {
+            // the trailing comma before the closing bracket is accepted by trace viewers
+            final Writer previous = m_writer;
+            m_writer = null;
+            try {
+                previous.write("{}]\n");
+            } finally {
+                previous.close();
+            }
+        }
+        Files.createDirectories(m_directory);
+        final Path file = m_directory.resolve(m_filePrefix + m_fileIndex++ + ".json");
+        m_writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        m_files.addLast(file);
+        while (m_files.size() > MAX_FILES) {
+            Files.deleteIfExists(m_files.removeFirst());
+        }
+        m_writer.write("[\n");
+        m_fileBytes = 2;
+        for (Map.Entry<Long, String> thread : m_threadNames.entrySet()) {
+            writeLine(THREAD_NAME, thread.getValue(), 0, thread.getKey());
+        }
+    }
+
+    private void flush() {
+        if (m_writer == null) {
+            return;
+        }
+        try {
+            m_writer.flush();
+        } catch (IOException e) {
+            fail("[Tracer] Could not flush trace events: " + e.getMessage());
+        }
+    }
+}
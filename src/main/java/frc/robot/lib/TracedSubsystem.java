@@ -0,0 +1,72 @@
+package frc.robot.lib;
+
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+
+/**
+ * A subsystem whose periodic is traced by {@link Tracer} under its name, put logic in {@link
+ * #tracedPeriodic()} instead of {@link #periodic()}.
+ *
+ * <p>When the scheduler is run through {@link CommandTracer#run()} the traces nest under
+ * "CommandScheduler" next to the traces of the commands.
+ *
+ * <p>The trace is named after the subsystem unless {@link #setTraceName(String)} is used, which is
+ * useful when several instances share a name.
+ *
+ * <p>Default commands are wrapped with {@link CommandTracer#traced(Command)} when they are set.
+ */
+public abstract class TracedSubsystem extends SubsystemBase {
+    /** The name periodic is traced under, looked up once since it isn't free. */
+    private String m_traceName;
+
+    /** Creates a traced subsystem named after its class. */
+    protected TracedSubsystem() {}
+
+    /**
+     * Creates a traced subsystem.
+     *
+     * @param name The name of the subsystem and its trace.
+     */
+    protected TracedSubsystem(String name) {
+        super(name);
+    }
+
+    @Override
+    public void setName(String name) {
+        super.setName(name);
+        m_traceName = name;
+    }
+
+    /**
+     * Sets the name periodic is traced under without renaming the subsystem, until the next {@link
+     * #setName(String)}.
+     *
+     * @param name The name of the trace.
+     */
+    protected void setTraceName(String name) {
+        m_traceName = name;
+    }
+
+    /**
+     * Sets the default command of this subsystem, traced with {@link CommandTracer#traced(Command)}.
+     *
+     * @param defaultCommand The default command, it must require this subsystem.
+     */
+    @Override
+    public void setDefaultCommand(Command defaultCommand) {
+        super.setDefaultCommand(CommandTracer.traced(defaultCommand));
+    }
+
+    @Override
+    public final void periodic() {
+        if (m_traceName == null) {
+            m_traceName = getName();
+        }
+        Tracer.startTrace(m_traceName);
+        tracedPeriodic();
+        Tracer.endTrace();
+    }
+
+    /** Called once per scheduler run inside a trace, put what would go in {@link #periodic()} here. */
+    protected void tracedPeriodic() {}
+}
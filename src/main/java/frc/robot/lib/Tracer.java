@@ -1,29 +1,42 @@
 package frc.robot.lib;
 
+import com.sun.management.GarbageCollectionNotificationInfo;
 import edu.wpi.first.networktables.DoublePublisher;
 import edu.wpi.first.networktables.NetworkTable;
 import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.StringArrayPublisher;
+import edu.wpi.first.util.struct.Struct;
 import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
 import edu.wpi.first.wpilibj.RobotController;
-import edu.wpi.first.wpilibj.Timer;
 import java.lang.management.GarbageCollectorMXBean;
 import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
 
 /**
  * A Utility class for tracing code execution time. Will put info to NetworkTables under the
  * "Tracer" table.
  *
+ * <p>Besides the last cycle's time of each trace, the p50/p95/p99/max over the last few seconds and
+ * how many times the trace overran {@link #setOverrunThreshold(double)} are published under
+ * "Tracer/Stats" about once a second.
+ *
  * <p>Example inside {@code Robot.java}
  *
  * <pre><code>
  *
  * public void robotPeriodic() {
- *   CommandScheduler.getInstance().run(); // CommandScheduler is already traced
+ *   CommandTracer.run(); // traces the scheduler, subsystems and traced commands
  *   Tracer.traceFunc("MyVendorDep", MyVendorDep::updateAll);
  * }
  * </code></pre>
@@ -31,8 +44,9 @@ import java.util.function.Supplier;
  * <p>Example inside a {@code Drive Subsystem}
  *
  * <pre><code>
- * // Subsystem periodics are automatically traced
- * public void periodic() {
+ * // TracedSubsystem periodics and default commands are traced automatically,
+ * // other commands only when wrapped with CommandTracer.traced
+ * protected void tracedPeriodic() {
  *   for (var module : modules) {
  *     Tracer.traceFunc("Module" + module.getName(), module::update);
  *   }
@@ -41,46 +55,216 @@ import java.util.function.Supplier;
  * </code></pre>
  */
 public class Tracer {
-    private static final class TraceStartData {
-        private double m_startTime;
-        private double m_startGCTotalTime;
+    /** The id of the invisible node every top level trace is a child of. */
+    private static final int ROOT = 0;
+
+    /** Marks the end of a child or sibling list. */
+    private static final int NONE = -1;
+
+    /** How many slices the latency window of each trace is made of. */
+    private static final int HISTOGRAM_SLICES = 5;
+
+    /** How many cycles are fully traced after a slow cycle when sampling. */
+    private static final int SLOW_CYCLE_TRACES = 5;
+
+    /** How many cycles each slice covers, latency stats are published once per slice. */
+    private static final int SLICE_CYCLES = 50;
+
+    /**
+     * The timings of a single node in a cycle, published as a struct array in compact mode. A single
+     * instance is reused for every node, its fields are packed straight into the batch.
+     */
+    private static final class TraceTiming {
+        private static final Struct<TraceTiming> struct =
+                ProceduralStructGenerator.genObject(TraceTiming.class, TraceTiming::new);
+
+        /** The id of the node, an index into the names topic. */
+        private int node;
+
+        /** The time spent in the node outside its children in milliseconds. */
+        private double self;
+
+        /** The time spent in the node including its children in milliseconds. */
+        private double total;
+
+        /** The gc time while the node was running in milliseconds. */
+        private double gc;
+    }
+
+    /** The latency histogram of a trace and the publishers of its stats. */
+    private static final class TraceStats {
+        private final LatencyHistogram m_histogram = new LatencyHistogram(HISTOGRAM_SLICES);
+        private final DoublePublisher m_p50;
+        private final DoublePublisher m_p95;
+        private final DoublePublisher m_p99;
+        private final DoublePublisher m_max;
+        private final DoublePublisher m_overruns;
+
+        private TraceStats(NetworkTable table) {
+            m_p50 = table.getDoubleTopic("p50").publish();
+            m_p95 = table.getDoubleTopic("p95").publish();
+            m_p99 = table.getDoubleTopic("p99").publish();
+            m_max = table.getDoubleTopic("max").publish();
+            m_overruns = table.getDoubleTopic("overruns").publish();
+        }
 
-        private void set(double startTime, double startGCTotalTime) {
-            this.m_startTime = startTime;
-            this.m_startGCTotalTime = startGCTotalTime;
+        /** Publishes the stats of the window in milliseconds and starts a new slice. */
+        private void publishAndRotate() {
+            m_p50.set(m_histogram.percentile(0.50) / 1_000.0);
+            m_p95.set(m_histogram.percentile(0.95) / 1_000.0);
+            m_p99.set(m_histogram.percentile(0.99) / 1_000.0);
+            m_max.set(m_histogram.max() / 1_000.0);
+            m_overruns.set(m_histogram.overruns());
+            m_histogram.rotate();
+        }
+    }
+
+    /**
+     * The total time the JVM has spent in garbage collection, shared by every thread.
+     *
+     * <p>Collectors report each collection through a notification on a JVM service thread, which
+     * adds its duration to a single counter. Reading the total is one volatile read instead of
+     * polling every collector on every trace boundary. A collection counts towards the traces that
+     * are open when its notification lands, which is just after the pause ends.
+     */
+    private static final class GCTime {
+        private static final AtomicLong TOTAL_MS = new AtomicLong();
+
+        /** The collectors to poll if notifications aren't supported by this JVM, else empty. */
+        private static final List<GarbageCollectorMXBean> POLLED = new ArrayList<>();
+
+        static {
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                if (!listen(gc)) {
+                    POLLED.add(gc);
+                }
+            }
+        }
+
+        private static boolean listen(GarbageCollectorMXBean gc) {
+            if (!(gc instanceof NotificationEmitter emitter)) {
+                return false;
+            }
+            try {
+                // the listener only links the notification class when the first notification
+                // arrives, so check it exists up front instead of failing on every collection
+                Class.forName("com.sun.management.GarbageCollectionNotificationInfo");
+                emitter.addNotificationListener(
+                        (notification, handback) -> {
+                            if (notification.getType().equals(
+                                    GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+                                final GarbageCollectionNotificationInfo info =
+                                        GarbageCollectionNotificationInfo.from(
+                                                (CompositeData) notification.getUserData());
+                                TOTAL_MS.addAndGet(info.getGcInfo().getDuration());
+                            }
+                        },
+                        null,
+                        null);
+                return true;
+            } catch (ClassNotFoundException | LinkageError e) {
+                // com.sun.management isn't available
+                return false;
+            }
+        }
+
+        /** Gets the total gc time in milliseconds. */
+        private static long total() {
+            long total = TOTAL_MS.get();
+            for (int i = 0; i < POLLED.size(); i++) {
+                total += POLLED.get(i).getCollectionTime();
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Reads how many bytes the current thread has allocated, through the {@code com.sun.management}
+     * extension of the thread bean. {@link #BEAN} is null if this JVM can't measure allocations.
+     */
+    private static final class ThreadAllocations {
+        private static final com.sun.management.ThreadMXBean BEAN = findBean();
+
+        private static com.sun.management.ThreadMXBean findBean() {
+            try {
+                if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                        && bean.isThreadAllocatedMemorySupported()) {
+                    bean.setThreadAllocatedMemoryEnabled(true);
+                    return bean;
+                }
+            } catch (LinkageError | UnsupportedOperationException e) {
+                // com.sun.management isn't available
+            }
+            return null;
         }
     }
 
     /**
      * All of the tracers persistent state in a single object to be stored in a {@link ThreadLocal}.
+     *
+     * <p>Every distinct trace path is interned the first time it's started into a node of a tree,
+     * identified by its index into the parallel arrays below. After the first cycle starting and
+     * ending traces only walks the tree and writes primitives, no allocations are made.
      */
     @SuppressWarnings("PMD.RedundantFieldInitializer")
     private static final class TracerState {
         private final NetworkTable m_rootTable;
 
-        /**
-         * The stack of traces, every startTrace will add to this stack and every endTrace will remove
-         * from this stack.
-         */
-        private final ArrayList<String> m_traceStack = new ArrayList<>();
+        /** How many nodes have been interned, including the root. */
+        private int m_nodeCount = 1;
 
-        /**
-         * ideally we only need `traceStack` but in the interest of memory optimization and string
-         * concatenation speed we store the history of the stack to reuse the stack names.
-         */
-        private final ArrayList<String> m_traceStackHistory = new ArrayList<>();
+        /** The name each node was started with. */
+        private String[] m_names = new String[16];
+
+        /** The full slash separated path of each node, used as its NetworkTables key. */
+        private String[] m_paths = new String[16];
+
+        /** The first child of each node, the rest are linked through {@link #m_nextSibling}. */
+        private int[] m_firstChild = new int[16];
+
+        /** The next sibling of each node. */
+        private int[] m_nextSibling = new int[16];
+
+        /** The timestamp each node was last started at in microseconds. */
+        private long[] m_startTimes = new long[16];
+
+        /** The total gc time when each node was last started at in milliseconds. */
+        private long[] m_startGCTimes = new long[16];
+
+        /** The time each node took this cycle in microseconds, modified every endTrace. */
+        private long[] m_elapsedTimes = new long[16];
+
+        /** The bytes the thread had allocated when each node was last started. */
+        private long[] m_startAllocations = new long[16];
+
+        /** The bytes allocated by each node this cycle, including its children. */
+        private long[] m_allocatedBytes = new long[16];
+
+        /** The allocation publisher of each node, created the first cycle a node is traced. */
+        private DoublePublisher[] m_allocationPublishers = new DoublePublisher[16];
 
-        /** The time of each trace, the key is the trace name, modified every endTrace. */
-        private final HashMap<String, Double> m_traceTimes = new HashMap<>();
+        /** The gc time while each node was running this cycle in milliseconds. */
+        private long[] m_gcTimes = new long[16];
+
+        /** Whether each node was ended this cycle. */
+        private boolean[] m_traced = new boolean[16];
+
+        /** The publisher of each node, created the first cycle a node is traced. */
+        private DoublePublisher[] m_publishers = new DoublePublisher[16];
+
+        /** The latency stats of each node, created the first time a node is traced. */
+        private TraceStats[] m_stats = new TraceStats[16];
+
+        /** How many cycles have ended, used to rotate the latency windows. */
+        private long m_cycleCount = 0;
 
         /**
-         * The start time of each trace and the gc time at the start of the trace, the key is the trace
-         * name, modified every startTrace and endTrace.
+         * The stack of traces, every startTrace will add to this stack and every endTrace will remove
+         * from this stack.
          */
-        private final HashMap<String, TraceStartData> m_traceStartTimes = new HashMap<>();
+        private int[] m_traceStack = new int[16];
 
-        /** the publishers for each trace, the key is the trace name, modified every endCycle. */
-        private final HashMap<String, DoublePublisher> m_publishers = new HashMap<>();
+        private int m_traceStackDepth = 0;
 
         /*
          * If the cycle is poisoned, it will warn the user
@@ -103,11 +287,66 @@ public class Tracer {
          */
         int m_stackSize = 0;
 
-        // the garbage collector beans
-        private final ArrayList<GarbageCollectorMXBean> m_gcs = new ArrayList<>(
-                ManagementFactory.getGarbageCollectorMXBeans());
+        /** If gc time should be subtracted from traces and published. */
+        private boolean m_gcLogging = true;
         private final DoublePublisher m_gcTimeEntry;
-        private double m_gcTimeThisCycle = 0.0;
+        private long m_gcTimeThisCycle = 0;
+
+        /** If the bytes allocated by each trace should be published. */
+        private boolean m_allocationTracking = false;
+
+        /** The id and name this state's events are exported under. */
+        private final long m_eventThreadId = nextEventThreadId.getAndIncrement();
+        private final String m_eventThreadName;
+
+        /** The sink this state last named its thread in. */
+        private TraceEventSink m_eventSink = null;
+
+        /** The ring this state's completed spans are aggregated through, created on first use. */
+        private TraceAggregator.SpanRing m_spanRing = null;
+
+        /** Fully trace one of every this many cycles, 1 traces every cycle. */
+        private int m_samplingPeriod = 1;
+
+        private int m_cyclesSinceSample = 0;
+
+        /** How many of the next cycles are fully traced because a recent cycle was slow. */
+        private int m_slowCyclesToTrace = 0;
+
+        /** If the current cycle isn't sampled, only its total time is measured. */
+        private boolean m_unsampled = false;
+
+        /** When the current unsampled cycle started in microseconds. */
+        private long m_unsampledCycleStart = 0;
+
+        /** The total gc time when the current unsampled cycle started in milliseconds. */
+        private long m_unsampledCycleStartGCTime = 0;
+
+        /** The top level node of the current unsampled cycle, its latency is still recorded. */
+        private int m_unsampledNode = NONE;
+
+        /** If this state drains the aggregator every cycle. */
+        private boolean m_aggregating = false;
+
+        /**
+         * Publishes every node's timings as one struct array instead of a topic per node, null if
+         * compact publishing is disabled.
+         */
+        private StructArrayBatcher<TraceTiming> m_compactTimings = null;
+
+        private StringArrayPublisher m_compactNames = null;
+        private final TraceTiming m_timing = new TraceTiming();
+
+        /** How many nodes the names topic was last published with. */
+        private int m_compactNodeCount = 0;
+
+        /** Records the last cycles to capture on overrun, null if capturing is disabled. */
+        private OverrunCapture m_overrunCapture = null;
+
+        /** When the last cycle's top level trace ended and how long it took in microseconds. */
+        private long m_cycleEndTime = 0;
+
+        private long m_cycleDuration = 0;
 
         private TracerState(String name, boolean threadLocalConstruction) {
             if (singleThreadedMode.get() && threadLocalConstruction) {
@@ -123,85 +362,312 @@ public class Tracer {
                 this.m_rootTable = NetworkTableInstance.getDefault().getTable("Tracer").getSubTable(name);
             }
             this.m_gcTimeEntry = m_rootTable.getDoubleTopic("GCTime").publish();
+            this.m_eventThreadName = name == null ? Thread.currentThread().getName() : name;
+            this.m_paths[ROOT] = "";
+            this.m_firstChild[ROOT] = NONE;
         }
 
-        private String appendTraceStack(String trace) {
-            m_stackSize++;
-            if (m_disabled) {
-                return "";
+        private void growNodes() {
+            final int capacity = m_names.length * 2;
+            m_names = Arrays.copyOf(m_names, capacity);
+            m_paths = Arrays.copyOf(m_paths, capacity);
+            m_firstChild = Arrays.copyOf(m_firstChild, capacity);
+            m_nextSibling = Arrays.copyOf(m_nextSibling, capacity);
+            m_startTimes = Arrays.copyOf(m_startTimes, capacity);
+            m_startGCTimes = Arrays.copyOf(m_startGCTimes, capacity);
+            m_elapsedTimes = Arrays.copyOf(m_elapsedTimes, capacity);
+            m_gcTimes = Arrays.copyOf(m_gcTimes, capacity);
+            m_startAllocations = Arrays.copyOf(m_startAllocations, capacity);
+            m_allocatedBytes = Arrays.copyOf(m_allocatedBytes, capacity);
+            m_allocationPublishers = Arrays.copyOf(m_allocationPublishers, capacity);
+            m_traced = Arrays.copyOf(m_traced, capacity);
+            m_publishers = Arrays.copyOf(m_publishers, capacity);
+            m_stats = Arrays.copyOf(m_stats, capacity);
+        }
+
+        private void exportEvent(byte phase, int node, long timestamp) {
+            final TraceEventSink sink = eventSink;
+            if (sink == null) {
+                return;
             }
-            m_traceStack.add(trace);
-            StringBuilder sb = new StringBuilder();
-            for (int i = 0; i < m_traceStack.size(); i++) {
-                sb.append(m_traceStack.get(i));
-                if (i < m_traceStack.size() - 1) {
-                    sb.append('/');
+            if (m_eventSink != sink) {
+                m_eventSink = sink;
+                sink.emit(TraceEventSink.THREAD_NAME, m_eventThreadName, timestamp, m_eventThreadId);
+            }
+            sink.emit(phase, m_names[node], timestamp, m_eventThreadId);
+        }
+
+        private void aggregateSpan(int node, long duration) {
+            final TraceAggregator agg = aggregator;
+            if (agg == null) {
+                return;
+            }
+            if (m_spanRing == null) {
+                m_spanRing = agg.register(m_eventThreadName);
+            }
+            m_spanRing.offer(m_paths[node], m_startTimes[node], duration);
+        }
+
+        private void enableCompactPublishing() {
+            for (int node = 1; node < m_nodeCount; node++) {
+                if (m_publishers[node] != null) {
+                    m_publishers[node].close();
+                    m_publishers[node] = null;
                 }
             }
-            String str = sb.toString();
-            m_traceStackHistory.add(str);
-            return str;
+            final NetworkTable table = m_rootTable.getSubTable("Compact");
+            m_compactTimings = new StructArrayBatcher<>(table, "Timings", TraceTiming.struct, 32);
+            m_compactNames = table.getStringArrayTopic("Names").publish();
         }
 
-        private String popTraceStack() {
+        private void publishCompact() {
+            if (m_compactNodeCount != m_nodeCount) {
+                // only republish the names when the tree grows, node ids never change
+                m_compactNames.set(Arrays.copyOf(m_paths, m_nodeCount));
+                m_compactNodeCount = m_nodeCount;
+            }
+            final TraceTiming timing = m_timing;
+            for (int node = 1; node < m_nodeCount; node++) {
+                if (!m_traced[node]) {
+                    continue;
+                }
+                long self = m_elapsedTimes[node];
+                for (int child = m_firstChild[node]; child != NONE; child = m_nextSibling[child]) {
+                    if (m_traced[child]) {
+                        self -= m_elapsedTimes[child];
+                    }
+                }
+                timing.node = node;
+                timing.self = self / 1_000.0;
+                timing.total = m_elapsedTimes[node] / 1_000.0;
+                timing.gc = m_gcTimes[node];
+                m_compactTimings.add(timing);
+            }
+            m_compactTimings.publish();
+        }
+
+        private void recordLatency(int node, long micros) {
+            TraceStats stats = m_stats[node];
+            if (stats == null) {
+                stats = new TraceStats(m_rootTable.getSubTable("Stats").getSubTable(m_paths[node]));
+                m_stats[node] = stats;
+            }
+            stats.m_histogram.record(micros, micros > overrunThresholdMicros);
+        }
+
+        /** Finds the child of {@code parent} with the given name, interning it on first use. */
+        private int intern(int parent, String name) {
+            for (int child = m_firstChild[parent]; child != NONE; child = m_nextSibling[child]) {
+                if (m_names[child].equals(name)) {
+                    return child;
+                }
+            }
+            if (m_nodeCount == m_names.length) {
+                growNodes();
+            }
+            final int node = m_nodeCount++;
+            m_names[node] = name;
+            m_paths[node] = parent == ROOT ? name : m_paths[parent] + "/" + name;
+            m_firstChild[node] = NONE;
+            m_nextSibling[node] = m_firstChild[parent];
+            m_firstChild[parent] = node;
+            return node;
+        }
+
+        private int appendTraceStack(String trace) {
+            m_stackSize++;
+            if (m_stackSize == 1 && m_samplingPeriod > 1) {
+                beginSampledCycle();
+            }
+            if (m_unsampled && m_stackSize == 1 && !m_disabled) {
+                m_unsampledNode = intern(ROOT, trace);
+            }
+            if (m_disabled || m_unsampled) {
+                return NONE;
+            }
+            final int parent = m_traceStackDepth == 0 ? ROOT : m_traceStack[m_traceStackDepth - 1];
+            final int node = intern(parent, trace);
+            if (m_traceStackDepth == m_traceStack.length) {
+                m_traceStack = Arrays.copyOf(m_traceStack, m_traceStack.length * 2);
+            }
+            m_traceStack[m_traceStackDepth++] = node;
+            return node;
+        }
+
+        private int popTraceStack() {
             m_stackSize = Math.max(0, m_stackSize - 1);
-            if (m_disabled) {
-                return "";
+            if (m_disabled || m_unsampled) {
+                return NONE;
             }
-            if (m_traceStack.isEmpty() || m_traceStackHistory.isEmpty() || m_cyclePoisoned) {
+            if (m_traceStackDepth == 0 || m_cyclePoisoned) {
                 m_cyclePoisoned = true;
-                return "";
+                return NONE;
+            }
+            return m_traceStack[--m_traceStackDepth];
+        }
+
+        /** Decides whether the cycle that is starting is traced. */
+        private void beginSampledCycle() {
+            if (m_slowCyclesToTrace > 0) {
+                m_slowCyclesToTrace--;
+                m_unsampled = false;
+            } else {
+                m_unsampled = ++m_cyclesSinceSample < m_samplingPeriod;
+                if (!m_unsampled) {
+                    m_cyclesSinceSample = 0;
+                }
+            }
+            if (m_unsampled) {
+                m_unsampledCycleStartGCTime = totalGCTime();
+                m_unsampledCycleStart = RobotController.getFPGATime();
+            }
+        }
+
+        /**
+         * Ends a cycle that wasn't traced. Its total time still goes into the latency stats of its top
+         * level trace and into the overrun capture, with no traces under it, and the next few cycles
+         * are traced if it was slow.
+         */
+        private void endUnsampledCycle() {
+            final long now = RobotController.getFPGATime();
+            final long duration = now - m_unsampledCycleStart;
+            final long gcTime = totalGCTime() - m_unsampledCycleStartGCTime;
+            if (m_aggregating) {
+                aggregator.drain();
+            }
+            if (!m_disabled) {
+                if (duration > overrunThresholdMicros) {
+                    m_slowCyclesToTrace = SLOW_CYCLE_TRACES;
+                }
+                if (m_unsampledNode != NONE) {
+                    recordLatency(m_unsampledNode, duration - gcTime * 1_000);
+                }
+                if (m_overrunCapture != null) {
+                    // nothing is marked traced between cycles, so the cycle is recorded without traces
+                    m_overrunCapture.recordCycle(
+                            now,
+                            duration,
+                            gcTime,
+                            m_paths,
+                            m_nodeCount,
+                            m_traced,
+                            m_startTimes,
+                            m_elapsedTimes);
+                }
+                countCycle();
             }
-            m_traceStack.remove(m_traceStack.size() - 1);
-            return m_traceStackHistory.remove(m_traceStackHistory.size() - 1);
+            m_unsampledNode = NONE;
+            m_unsampled = false;
+            m_disabled = m_disableNextCycle;
         }
 
-        private double totalGCTime() {
-            double gcTime = 0;
-            for (GarbageCollectorMXBean gc : m_gcs) {
-                gcTime += gc.getCollectionTime();
+        /** Counts a finished cycle, publishing and rotating the latency windows once per slice. */
+        private void countCycle() {
+            if (++m_cycleCount % SLICE_CYCLES == 0) {
+                for (int node = 1; node < m_nodeCount; node++) {
+                    if (m_stats[node] != null) {
+                        m_stats[node].publishAndRotate();
+                    }
+                }
             }
-            return gcTime;
+        }
+
+        private long totalGCTime() {
+            return m_gcLogging ? GCTime.total() : 0;
         }
 
         private void endCycle() {
+            if (m_aggregating) {
+                aggregator.drain();
+            }
             if (m_disabled != m_disableNextCycle || m_cyclePoisoned) {
                 // Gives publishers empty times,
                 // reporting no data is better than bad data
-                for (var publisher : m_publishers.entrySet()) {
-                    publisher.getValue().set(0.0);
+                for (int node = 1; node < m_nodeCount; node++) {
+                    if (m_publishers[node] != null) {
+                        m_publishers[node].set(0.0);
+                    }
+                    if (m_allocationPublishers[node] != null) {
+                        m_allocationPublishers[node].set(0.0);
+                    }
+                    m_traced[node] = false;
                 }
+                if (m_compactTimings != null) {
+                    m_compactTimings.publish();
+                }
+                m_cyclePoisoned = false;
+                m_traceStackDepth = 0;
+                m_disabled = m_disableNextCycle;
                 return;
             } else if (!m_disabled) {
-                // update times for all already existing publishers
-                for (var publisher : m_publishers.entrySet()) {
-                    Double time = m_traceTimes.remove(publisher.getKey());
-                    if (time == null) {
-                        time = 0.0;
-                    }
-                    publisher.getValue().set(time);
+                if (m_samplingPeriod > 1 && m_cycleDuration > overrunThresholdMicros) {
+                    m_slowCyclesToTrace = SLOW_CYCLE_TRACES;
                 }
-                // create publishers for all new entries
-                for (var traceTime : m_traceTimes.entrySet()) {
-                    DoublePublisher publisher = m_rootTable.getDoubleTopic(traceTime.getKey()).publish();
-                    publisher.set(traceTime.getValue());
-                    m_publishers.put(traceTime.getKey(), publisher);
+                if (m_overrunCapture != null) {
+                    m_overrunCapture.recordCycle(
+                            m_cycleEndTime,
+                            m_cycleDuration,
+                            m_gcTimeThisCycle,
+                            m_paths,
+                            m_nodeCount,
+                            m_traced,
+                            m_startTimes,
+                            m_elapsedTimes);
+                }
+                if (m_compactTimings != null) {
+                    publishCompact();
+                }
+                for (int node = 1; node < m_nodeCount; node++) {
+                    if (m_traced[node]) {
+                        if (m_compactTimings == null) {
+                            // create publishers for nodes traced for the first time
+                            if (m_publishers[node] == null) {
+                                m_publishers[node] = m_rootTable.getDoubleTopic(m_paths[node]).publish();
+                            }
+                            m_publishers[node].set(m_elapsedTimes[node] / 1_000.0);
+                        }
+                        if (m_allocationTracking) {
+                            if (m_allocationPublishers[node] == null) {
+                                m_allocationPublishers[node] = m_rootTable
+                                        .getSubTable("Allocations")
+                                        .getDoubleTopic(m_paths[node])
+                                        .publish();
+                            }
+                            m_allocationPublishers[node].set(m_allocatedBytes[node]);
+                        }
+                        m_traced[node] = false;
+                    } else {
+                        if (m_publishers[node] != null) {
+                            m_publishers[node].set(0.0);
+                        }
+                        if (m_allocationPublishers[node] != null) {
+                            m_allocationPublishers[node].set(0.0);
+                        }
+                    }
                 }
                 // log gc time
-                if (!m_gcs.isEmpty()) {
+                if (m_gcLogging) {
                     m_gcTimeEntry.set(m_gcTimeThisCycle);
                 }
-                m_gcTimeThisCycle = 0.0;
+                m_gcTimeThisCycle = 0;
+                countCycle();
             }
 
-            // clean up state
-            m_traceTimes.clear();
-            m_traceStackHistory.clear();
-
             m_disabled = m_disableNextCycle;
         }
     }
 
+    /** Where begin and end events are exported to, null if exporting is disabled. */
+    private static volatile TraceEventSink eventSink = null;
+
+    /** Merges every thread's spans into one timeline, null if aggregation is disabled. */
+    private static volatile TraceAggregator aggregator = null;
+
+    private static final AtomicLong nextEventThreadId = new AtomicLong(1);
+
+    /** Traces longer than this count as overruns, in microseconds. */
+    private static volatile long overrunThresholdMicros = 20_000;
+
     private static final AtomicBoolean singleThreadedMode = new AtomicBoolean(false);
     private static final AtomicBoolean anyTracesStarted = new AtomicBoolean(false);
     private static final ThreadLocal<TracerState> threadLocalState = ThreadLocal.withInitial(
@@ -210,35 +676,58 @@ public class Tracer {
             });
 
     private static void startTraceInner(final String name, final TracerState state) {
-        String stack = state.appendTraceStack(name);
-        if (state.m_disabled) {
+        final int node = state.appendTraceStack(name);
+        if (state.m_disabled || state.m_unsampled) {
             return;
         }
-        TraceStartData data = state.m_traceStartTimes.get(stack);
-        if (data == null) {
-            data = new TraceStartData();
-            state.m_traceStartTimes.put(stack, data);
+        final long now = RobotController.getFPGATime();
+        state.exportEvent(TraceEventSink.BEGIN, node, now);
+        state.m_startTimes[node] = now;
+        state.m_startGCTimes[node] = state.totalGCTime();
+        if (state.m_allocationTracking) {
+            state.m_startAllocations[node] = ThreadAllocations.BEAN.getCurrentThreadAllocatedBytes();
         }
-        data.set(Timer.getFPGATimestamp() * 1_000.0, state.totalGCTime());
     }
 
     private static void endTraceInner(final TracerState state) {
-        String stack = state.popTraceStack();
+        final int node = state.popTraceStack();
+        if (state.m_unsampled) {
+            if (state.m_stackSize == 0) {
+                state.endUnsampledCycle();
+            }
+            return;
+        }
         if (!state.m_disabled) {
-            if (stack.isEmpty()) {
+            if (node == NONE) {
                 DriverStation.reportError(
                         "[Tracer] Stack is empty,"
                                 + "this means that there are more endTrace calls than startTrace calls",
                         true);
+                // drops this cycle's data and clears the poison
+                state.endCycle();
                 return;
             }
-            var startData = state.m_traceStartTimes.get(stack);
-            double gcTimeSinceStart = state.totalGCTime() - startData.m_startGCTotalTime;
-            state.m_gcTimeThisCycle += gcTimeSinceStart;
-            state.m_traceTimes.put(
-                    stack, Timer.getFPGATimestamp() * 1_000.0 - startData.m_startTime - gcTimeSinceStart);
+            if (state.m_allocationTracking) {
+                state.m_allocatedBytes[node] =
+                        ThreadAllocations.BEAN.getCurrentThreadAllocatedBytes()
+                                - state.m_startAllocations[node];
+            }
+            final long now = RobotController.getFPGATime();
+            state.exportEvent(TraceEventSink.END, node, now);
+            final long gcTimeSinceStart = state.totalGCTime() - state.m_startGCTimes[node];
+            if (state.m_traceStackDepth == 0) {
+                // nested traces overlap their parent, only count each pause once
+                state.m_gcTimeThisCycle += gcTimeSinceStart;
+                state.m_cycleEndTime = now;
+                state.m_cycleDuration = now - state.m_startTimes[node];
+            }
+            state.aggregateSpan(node, now - state.m_startTimes[node]);
+            state.m_elapsedTimes[node] = now - state.m_startTimes[node] - gcTimeSinceStart * 1_000;
+            state.m_gcTimes[node] = gcTimeSinceStart;
+            state.m_traced[node] = true;
+            state.recordLatency(node, state.m_elapsedTimes[node]);
         }
-        if (state.m_traceStack.isEmpty()) {
+        if (state.m_traceStackDepth == 0) {
             state.endCycle();
         }
     }
@@ -273,7 +762,166 @@ public class Tracer {
     public static void disableGcLoggingForCurrentThread() {
         TracerState state = threadLocalState.get();
         state.m_gcTimeEntry.close();
-        state.m_gcs.clear();
+        state.m_gcLogging = false;
+    }
+
+    /**
+     * Enables publishing how many bytes each trace allocated on the current thread every cycle, under
+     * "Allocations" next to the trace times. A trace's bytes include its children's. This is useful
+     * for finding what causes garbage collection and catching allocation regressions.
+     *
+     * <p>Reads the thread's allocation counter on every trace boundary, which costs more than reading
+     * the clock, so this is off by default.
+     *
+     * <p>This counts as starting a tracer on the current thread, this is important to consider with
+     * {@link #enableSingleThreadedMode()} and should never be called before if you are using single
+     * threaded mode.
+     */
+    public static void enableAllocationTrackingForCurrentThread() {
+        if (ThreadAllocations.BEAN == null) {
+            DriverStation.reportWarning(
+                    "[Tracer] This JVM can't measure thread allocations, allocation tracking is unavailable",
+                    false);
+            return;
+        }
+        threadLocalState.get().m_allocationTracking = true;
+    }
+
+    /** Disables publishing how many bytes each trace allocated on the current thread. */
+    public static void disableAllocationTrackingForCurrentThread() {
+        threadLocalState.get().m_allocationTracking = false;
+    }
+
+    /**
+     * Merges the traces of every thread into a single timeline published under "Tracer/Timeline",
+     * drained every time the current thread ends a cycle. Should be called from the main robot loop.
+     *
+     * <p>Threads hand their completed traces over through their own lock free ring buffer, so
+     * threads with their own loops like vision or odometry can be traced without slowing down or
+     * contending with the main loop. Unlike {@link #enableSingleThreadedMode()} tracing stays enabled
+     * on every thread.
+     *
+     * <p>This counts as starting a tracer on the current thread, this is important to consider with
+     * {@link #enableSingleThreadedMode()} and should never be called before if you are using single
+     * threaded mode.
+     */
+    public static synchronized void enableCrossThreadAggregation() {
+        if (aggregator != null) {
+            DriverStation.reportError("[Tracer] Cross thread aggregation is already enabled", true);
+            return;
+        }
+        final TracerState state = threadLocalState.get();
+        aggregator = new TraceAggregator(
+                NetworkTableInstance.getDefault().getTable("Tracer").getSubTable("Timeline"));
+        state.m_aggregating = true;
+    }
+
+    /**
+     * Only traces one of every {@code cycles} cycles on the current thread, plus the next few cycles
+     * after any cycle longer than {@link #setOverrunThreshold(double)}. The total time of untraced
+     * cycles is still measured with a single clock read at their start and end, so slow cycles are
+     * caught while tracing costs close to nothing. Published values are held between traced cycles.
+     *
+     * <p>Every cycle, traced or not, still counts towards the latency windows, so they keep covering
+     * the same few seconds. Untraced cycles add their total time to the stats of their top level
+     * trace and are recorded by {@link #enableOverrunCapture(int, double)} without the traces under
+     * it, so an overrunning cycle is always captured. The stats of nested traces only include traced
+     * cycles, which lean towards the cycles right after a slow one.
+     *
+     * <p>This counts as starting a tracer on the current thread, this is important to consider with
+     * {@link #enableSingleThreadedMode()} and should never be called before if you are using single
+     * threaded mode.
+     *
+     * @param cycles how many cycles apart traced cycles are, 1 traces every cycle.
+     */
+    public static void setSamplingPeriod(int cycles) {
+        threadLocalState.get().m_samplingPeriod = Math.max(1, cycles);
+    }
+
+    /**
+     * Publishes the current thread's trace times as a single struct array topic of {@code
+     * TraceTiming} (node id, self time, total time and gc time) under "Compact/Timings" instead of a
+     * topic per trace. Node ids index into the "Compact/Names" string array, which is only published
+     * when a new trace shows up. Only traces that ran in a cycle are included.
+     *
+     * <p>This makes a single NetworkTables update per cycle instead of one per trace, which adds up
+     * with dozens of traces.
+     *
+     * <p>This counts as starting a tracer on the current thread, this is important to consider with
+     * {@link #enableSingleThreadedMode()} and should never be called before if you are using single
+     * threaded mode.
+     */
+    public static void enableCompactPublishingForCurrentThread() {
+        final TracerState state = threadLocalState.get();
+        if (state.m_compactTimings == null) {
+            state.enableCompactPublishing();
+        }
+    }
+
+    /**
+     * Keeps the trace trees of the last {@code cycles} cycles of the current thread, and whenever a
+     * cycle takes longer than {@code budgetSeconds} writes them along with GC and thread state to a
+     * binary file in the "overruns" folder of the operating directory, {@code
+     * /home/lvuser/overruns} on a roboRIO. Captures are written in the background, at most one every
+     * 10 seconds.
+     *
+     * <p>With {@link #setSamplingPeriod(int)} the cycles that weren't traced are kept too, with their
+     * duration and GC time but no traces.
+     *
+     * <p>This counts as starting a tracer on the current thread, this is important to consider with
+     * {@link #enableSingleThreadedMode()} and should never be called before if you are using single
+     * threaded mode.
+     *
+     * @param cycles how many cycles to keep.
+     * @param budgetSeconds how long a cycle can take before it's captured, in seconds.
+     */
+    public static void enableOverrunCapture(int cycles, double budgetSeconds) {
+        final TracerState state = threadLocalState.get();
+        if (state.m_overrunCapture != null) {
+            DriverStation.reportError(
+                    "[Tracer] Overrun capture is already enabled for this thread", true);
+            return;
+        }
+        state.m_overrunCapture = new OverrunCapture(
+                state.m_eventThreadName,
+                Math.max(1, cycles),
+                (long) (budgetSeconds * 1_000_000),
+                Filesystem.getOperatingDirectory().toPath().resolve("overruns"));
+    }
+
+    /**
+     * Starts exporting every trace's begin and end events to Chrome trace-event JSON files in {@code
+     * directory}, open them in Perfetto or {@code chrome://tracing} for a flame chart. Files are
+     * written by a background thread and rotated so only the most recent ones are kept.
+     *
+     * <p>Calling this again has no effect.
+     *
+     * @param directory the directory to write trace files to.
+     */
+    public static synchronized void enableTraceEventExport(Path directory) {
+        if (eventSink == null) {
+            eventSink = new TraceEventSink(directory, 1 << 16);
+        }
+    }
+
+    /**
+     * Starts exporting every trace's begin and end events to Chrome trace-event JSON files in the
+     * "traces" folder of the operating directory, {@code /home/lvuser/traces} on a roboRIO.
+     *
+     * @see #enableTraceEventExport(Path)
+     */
+    public static void enableTraceEventExport() {
+        enableTraceEventExport(Filesystem.getOperatingDirectory().toPath().resolve("traces"));
+    }
+
+    /**
+     * Sets how long a trace can take before it counts as an overrun in its published stats, usually
+     * the loop period of the robot.
+     *
+     * @param seconds the overrun threshold in seconds.
+     */
+    public static void setOverrunThreshold(double seconds) {
+        overrunThresholdMicros = (long) (seconds * 1_000_000.0);
     }
 
     /**
@@ -377,7 +1025,7 @@ public class Tracer {
         public SubstitutiveTracer(String name) {
             m_state = new TracerState(name, false);
             m_state.m_gcTimeEntry.close();
-            m_state.m_gcs.clear();
+            m_state.m_gcLogging = false;
             m_originalState = threadLocalState.get();
         }
 
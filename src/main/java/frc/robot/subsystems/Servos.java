@@ -8,9 +8,9 @@ import com.revrobotics.servohub.ServoChannel;
 import com.revrobotics.servohub.ServoChannel.ChannelId;
 import com.revrobotics.servohub.ServoHub;
 
-import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.lib.TracedSubsystem;
 
-public class Servos extends SubsystemBase {
+public class Servos extends TracedSubsystem {
   /** Creates a new Servos. */
   int pulse_0 = 1500; 
   int pulse_1 = 1500; 
@@ -37,7 +37,7 @@ public class Servos extends SubsystemBase {
   }
 
   @Override
-  public void periodic() {
+  protected void tracedPeriodic() {
     //SmartDashboard.putNumber("Servo 0 Angle", 1500); 
     //SmartDashboard.putNumber("Servo 1 Angle", 1500); 
    
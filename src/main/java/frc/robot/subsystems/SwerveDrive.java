@@ -20,13 +20,13 @@ import edu.wpi.first.wpilibj.smartdashboard.Field2d;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
-import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.Constants;
+import frc.robot.lib.TracedSubsystem;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
 import edu.wpi.first.wpilibj.DriverStation;
 
 //Class containing all functions and variables pertaining to the SwerveDrive
-public class SwerveDrive extends SubsystemBase 
+public class SwerveDrive extends TracedSubsystem 
 { 
   double maxVelocity; //The maximum linear speed of the robot in meters per second
   double maxAngularSpeed; //The maximum angular speed of the robot in radians per second
@@ -151,7 +151,7 @@ public class SwerveDrive extends SubsystemBase
   }
 
   @Override 
-  public void periodic() 
+  protected void tracedPeriodic() 
     {      
       // //Periodically update the swerve odometry
       updateOdometry(); 
@@ -23,8 +23,8 @@ import edu.wpi.first.wpilibj.Preferences;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.InstantCommand;
-import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.lib.ConfigCheck;
+import frc.robot.lib.TracedSubsystem;
 
 import static edu.wpi.first.units.Units.Degrees;
 import static edu.wpi.first.units.Units.Rotations;
@@ -34,7 +34,7 @@ import static edu.wpi.first.units.Units.RotationsPerSecond;
  * Swerve Module is a two motor device that allows a wheel's speed and angle to be commanded 
  * separately. 
  */
-public class SwerveModule extends SubsystemBase 
+public class SwerveModule extends TracedSubsystem 
   {
     //A Swerve Module has a drive motor, a steering motor, and an encoder angle sensor
     private final TalonFX driveMotor; 
@@ -69,6 +69,8 @@ public class SwerveModule extends SubsystemBase
   */
   public SwerveModule(int driveMotorID, int steeringMotorID, int steeringEncoderID, int stopAngle) 
     {
+      //Trace each module under its drive motor so their periodics are traced separately
+      setTraceName("SwerveModule" + driveMotorID);
       //The drive motor is a CTRE Falcon 500 
       driveMotor = new TalonFX(driveMotorID); 
       //The steering motor is a CTRE Falcon 500
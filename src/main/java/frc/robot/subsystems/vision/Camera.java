@@ -9,16 +9,27 @@ import edu.wpi.first.math.geometry.Transform3d;
 import edu.wpi.first.math.numbers.N1;
 import edu.wpi.first.math.numbers.N3;
 import edu.wpi.first.math.numbers.N8;
+import edu.wpi.first.networktables.NetworkTableEvent;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.util.struct.Struct;
+import edu.wpi.first.util.struct.StructSerializable;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import frc.robot.constants.AprilTags;
 import frc.robot.constants.FieldConstants;
+import frc.robot.lib.ProceduralStructGenerator;
+import frc.robot.lib.ProceduralStructGenerator.FixedSizeArray;
+import frc.robot.lib.ProceduralStructGenerator.GenerateStruct;
+import frc.robot.lib.SpscQueue;
+import frc.robot.lib.Tracer;
 import frc.robot.subsystems.vision.Vision.VisionUpdate;
 import frc.robot.subsystems.vision.VisionConstants.Filtering;
-import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import org.photonvision.EstimatedRobotPose;
 import org.photonvision.PhotonCamera;
 import org.photonvision.PhotonPoseEstimator;
@@ -27,8 +38,15 @@ import org.photonvision.estimation.TargetModel;
 import org.photonvision.targeting.PhotonPipelineResult;
 import org.photonvision.targeting.PhotonTrackedTarget;
 
-/** An abstraction for a photon camera. */
+/**
+ * An abstraction for a photon camera.
+ *
+ * <p>Each camera processes its results on its own thread, woken whenever PhotonVision publishes a
+ * new result, so pose estimation never runs on the main robot loop. Finished updates are handed
+ * to the main loop through a lock free queue drained with {@link #pollUpdate()}.
+ */
 public class Camera {
+  @GenerateStruct
   public record CameraIntrinsics(
       double width,
       double height,
@@ -36,7 +54,7 @@ public class Camera {
       double fy,
       double cx,
       double cy,
-      double[] distortion) {
+      @FixedSizeArray(size = 8) double[] distortion) implements StructSerializable {
 
     public Matrix<N8, N1> distortionMatrix() {
       return MatBuilder.fill(Nat.N8(), Nat.N1(), distortion);
@@ -57,6 +75,9 @@ public class Camera {
     public double diagonalFOV() {
       return 2.0 * Math.atan2(Math.hypot(width, height) / 2.0, fx);
     }
+
+    public static final Struct<CameraIntrinsics> struct =
+        ProceduralStructGenerator.genRecord(CameraIntrinsics.class);
   }
 
   protected final PhotonCamera camera;
@@ -68,9 +89,25 @@ public class Camera {
   private final Optional<Matrix<N8, N1>> cachedDistortionMatrix;
   private final Optional<Matrix<N3, N3>> cachedCameraMatrix;
 
-  private Optional<VisionUpdate> previousUpdate = Optional.empty();
-  private ArrayList<Integer> seenTags = new ArrayList<>();
-  private ArrayList<VisionUpdate> updates = new ArrayList<>();
+  /** How long the worker sleeps without a new result before checking anyway, in nanoseconds. */
+  private static final long WORKER_TIMEOUT_NANOS = 100_000_000L;
+
+  private static final int UPDATE_QUEUE_CAPACITY = 16;
+
+  private VisionUpdate previousUpdate = null;
+  private final TargetScoring scoring;
+  /** The tags seen in the results being processed, bit {@code n} is set if tag {@code n} was seen. */
+  private long seenTagMask = 0L;
+
+  /** The tags seen in the last processed results, written by the worker. */
+  private final AtomicLong publishedSeenTagMask = new AtomicLong();
+
+  /** When the worker last got any results, in {@link System#nanoTime()} nanoseconds. */
+  private long lastResultsNanos = System.nanoTime();
+
+  private final SpscQueue<VisionUpdate> updates = new SpscQueue<>(UPDATE_QUEUE_CAPACITY);
+  private final Thread worker;
+  private final String workerTraceName;
 
   public Camera(String name, double trustScalar, Transform3d cameraTransform, CameraIntrinsics intrinsics) {
     this.camera = new PhotonCamera(name);
@@ -80,6 +117,7 @@ public class Camera {
     this.intrinsics = intrinsics;
     this.cachedDistortionMatrix = Optional.of(intrinsics.distortionMatrix());
     this.cachedCameraMatrix = Optional.of(intrinsics.cameraMatrix());
+    this.scoring = new TargetScoring(intrinsics.width(), intrinsics.height());
 
     poseEstimator =
         new PhotonPoseEstimator(
@@ -87,82 +125,82 @@ public class Camera {
     poseEstimator.setTagModel(TargetModel.kAprilTag36h11);
     poseEstimator.setMultiTagFallbackStrategy(PoseStrategy.LOWEST_AMBIGUITY);
 
+    this.workerTraceName = name + "Worker";
+    this.worker = new Thread(this::runWorker, "Vision-" + name);
+    this.worker.setDaemon(true);
   }
 
-  private double normalizedDistanceFromCenter(PhotonTrackedTarget target) {
-    final double HEIGHT = intrinsics.height;
-    final double WIDTH = intrinsics.width;
-    double sumX = 0.0;
-    double sumY = 0.0;
-    for (var corner : target.minAreaRectCorners) {
-      sumX += corner.x - WIDTH / 2.0;
-      sumY += corner.y - HEIGHT / 2.0;
-    }
-    double avgX = sumX / target.minAreaRectCorners.size();
-    double avgY = sumY / target.minAreaRectCorners.size();
-    return Math.hypot(avgX, avgY) / Math.hypot(WIDTH / 2.0, HEIGHT / 2.0);
+  /** Starts processing results on this camera's worker thread. */
+  public void start() {
+    if (worker.getState() != Thread.State.NEW) {
+      return;
+    }
+    NetworkTableInstance.getDefault()
+        .addListener(
+            camera.getCameraTable().getRawTopic("rawBytes"),
+            EnumSet.of(NetworkTableEvent.Kind.kValueAll),
+            event -> LockSupport.unpark(worker));
+    worker.start();
   }
 
-  private double dimensionProportionDifference(PhotonTrackedTarget target) {
-    final var corners = target.getDetectedCorners();
-    double height = Math.abs(corners.get(0).y - corners.get(3).y);
-    double width = Math.abs(corners.get(1).x - corners.get(0).x);
-    return Math.min(height, width) / Math.max(height, width);
+  private void runWorker() {
+    while (true) {
+      LockSupport.parkNanos(this, WORKER_TIMEOUT_NANOS);
+      Tracer.startTrace(workerTraceName);
+      try {
+        processResults();
+      } catch (Exception e) {
+        DriverStation.reportError("Error in camera " + getName(), e.getStackTrace());
+      }
+      Tracer.endTrace();
+    }
   }
 
-  private Optional<VisionUpdate> update(EstimatedRobotPose estRoboPose) {
-    for (PhotonTrackedTarget target : estRoboPose.targetsUsed) {
-      seenTags.add(target.fiducialId);
+  /** Returns null if the estimate jumped too far from the previous one. */
+  private VisionUpdate update(EstimatedRobotPose estRoboPose) {
+    final List<PhotonTrackedTarget> targetsUsed = estRoboPose.targetsUsed;
+    long estimateTagMask = 0L;
+    boolean unrankedTag = false;
+    for (int i = 0; i < targetsUsed.size(); i++) {
+      final long bit = AprilTags.tagBit(targetsUsed.get(i).fiducialId);
+      estimateTagMask |= bit;
+      unrankedTag |= bit == 0L;
     }
+    seenTagMask |= estimateTagMask;
 
     double trust = trustScalar;
 
     Pose2d pose = estRoboPose.estimatedPose.toPose2d();
 
-    double sumArea =
-        estRoboPose.targetsUsed.stream()
-            .map(PhotonTrackedTarget::getArea)
-            .mapToDouble(Double::doubleValue)
-            .sum();
-
-    double avgNormalizedPixelsFromCenter =
-        estRoboPose.targetsUsed.stream()
-            .map(this::normalizedDistanceFromCenter)
-            .mapToDouble(Double::doubleValue)
-            .average()
-            .orElseGet(() -> 0.0);
-
-    double avgDimensionProportion =
-        estRoboPose.targetsUsed.stream()
-            .map(this::dimensionProportionDifference)
-            .mapToDouble(Double::doubleValue)
-            .average()
-            .orElseGet(() -> 0.0);
-
-    if (previousUpdate.isPresent()) {
-      double timeSinceLastUpdate = estRoboPose.timestampSeconds - previousUpdate.get().timestamp();
+    if (previousUpdate != null) {
+      double timeSinceLastUpdate = estRoboPose.timestampSeconds - previousUpdate.timestamp();
       double distanceFromLastUpdate =
-          pose.getTranslation().getDistance(previousUpdate.get().pose().getTranslation());
+          pose.getTranslation().getDistance(previousUpdate.pose().getTranslation());
       if (distanceFromLastUpdate > timeSinceLastUpdate * 5.0) {
-        return Optional.empty();
+        return null;
       }
     }
 
-    for (int tagId : seenTags) {
-      trust *= Filtering.TAG_RANKINGS.getOrDefault(tagId, 0.0);
+    scoring.score(targetsUsed);
+
+    // only the tags used in this estimate count towards its trust
+    for (long tags = estimateTagMask; tags != 0L; tags &= tags - 1) {
+      trust *= Filtering.tagRanking(Long.numberOfTrailingZeros(tags));
+    }
+    if (unrankedTag) {
+      trust = 0.0;
     }
 
-    trust *= Filtering.AREA_WEIGHT_COEFFICIENT.lerp(sumArea);
-    trust *= Filtering.PIXEL_OFFSET_WEIGHT_COEFFICIENT.lerp(avgNormalizedPixelsFromCenter);
-    trust *= Filtering.HEIGHT_WIDTH_PROPORTION_WEIGHT_COEFFICIENT.lerp(avgDimensionProportion);
+    trust *= Filtering.AREA_WEIGHT_COEFFICIENT.lerp(scoring.sumArea());
+    trust *= Filtering.PIXEL_OFFSET_WEIGHT_COEFFICIENT.lerp(scoring.avgNormalizedDistanceFromCenter());
+    trust *= Filtering.HEIGHT_WIDTH_PROPORTION_WEIGHT_COEFFICIENT.lerp(scoring.avgDimensionProportion());
 
     if (DriverStation.isDisabled()) {
       trust = 1.0;
     }
 
-    var u = new VisionUpdate(pose, estRoboPose.timestampSeconds, trust);
-    previousUpdate = Optional.of(u);
-
+    // the update is handed to the main loop, so it has to be a fresh immutable record
+    previousUpdate = new VisionUpdate(pose, estRoboPose.timestampSeconds, trust);
     return previousUpdate;
   }
 
@@ -170,45 +208,74 @@ public class Camera {
     return camera.getName();
   }
 
-  public List<VisionUpdate> flushUpdates() {
-    var u = updates;
-    updates = new ArrayList<>();
-    return u;
+  /**
+   * Takes the oldest finished update, should only be called from the main robot loop.
+   *
+   * @return The oldest update, or null if there are none.
+   */
+  public VisionUpdate pollUpdate() {
+    return updates.poll();
   }
 
-  public List<Integer> getSeenTags() {
-    return seenTags;
+  /**
+   * Gets the tags seen in the last processed results.
+   *
+   * @return A bitmask where bit {@code n} is set if tag {@code n} was seen.
+   */
+  public long getSeenTagMask() {
+    return publishedSeenTagMask.get();
   }
 
-  private PhotonPipelineResult pruneTags(PhotonPipelineResult result) {
-    ArrayList<PhotonTrackedTarget> newTargets = new ArrayList<>();
-    for (var target : result.targets) {
-      if (AprilTags.observableTag(target.fiducialId)) {
-        newTargets.add(target);
+  /** Removes the targets that aren't in {@code observableTags} from the result in place. */
+  private static void pruneTags(PhotonPipelineResult result, long observableTags) {
+    final List<PhotonTrackedTarget> targets = result.targets;
+    int kept = 0;
+    for (int i = 0; i < targets.size(); i++) {
+      final PhotonTrackedTarget target = targets.get(i);
+      if ((observableTags & AprilTags.tagBit(target.fiducialId)) != 0L) {
+        targets.set(kept++, target);
       }
     }
-    result.targets = newTargets;
-    return result;
+    // remove from the end so nothing is shifted
+    for (int i = targets.size() - 1; i >= kept; i--) {
+      targets.remove(i);
+    }
   }
 
-  public void periodic() {
-    poseEstimator.addHeadingData(Timer.getFPGATimestamp(), Rotation2d.kZero);
-    seenTags.clear();
+  /** Runs on the worker thread, estimates a pose from every unread result. */
+  private void processResults() {
     final var results = camera.getAllUnreadResults();
+    if (results.isEmpty()) {
+      // the worker also wakes up spuriously or on a permit left by results it already read, so
+      // the tags are only cleared once the camera has really been silent for a whole timeout
+      if (System.nanoTime() - lastResultsNanos >= WORKER_TIMEOUT_NANOS) {
+        publishedSeenTagMask.set(0L);
+      }
+      return;
+    }
+    lastResultsNanos = System.nanoTime();
+    poseEstimator.addHeadingData(Timer.getFPGATimestamp(), Rotation2d.kZero);
+    seenTagMask = 0L;
+    // the alliance is looked up once per batch instead of once per target
+    final long observableTags = AprilTags.observableTagMask();
     for (var result : results) {
       if (result.hasTargets()) {
-        result = pruneTags(result);
+        pruneTags(result, observableTags);
         Optional<EstimatedRobotPose> estRoboPose =
             poseEstimator.update(result, cachedCameraMatrix, cachedDistortionMatrix, Optional.empty());
         if (estRoboPose.isPresent()) {
-          Optional<VisionUpdate> u = update(estRoboPose.get());
-          if (u.isPresent()) {
-            updates.add(u.get());
+          final VisionUpdate u = update(estRoboPose.get());
+          if (u != null && !updates.offer(u)) {
+            DriverStation.reportWarning("Vision updates from " + getName() + " dropped, queue is full", false);
           }
         }
       }
     }
+    publishedSeenTagMask.set(seenTagMask);
+  }
 
+  /** Runs on the main robot loop, only publishes status since results are processed by the worker. */
+  public void periodic() {
     SmartDashboard.putBoolean("/Vision/" + getName() + "/isConnected", camera.isConnected());
   }
 }
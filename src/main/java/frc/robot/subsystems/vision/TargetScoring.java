@@ -0,0 +1,82 @@
+package frc.robot.subsystems.vision;
+
+import java.util.List;
+import org.photonvision.targeting.PhotonTrackedTarget;
+import org.photonvision.targeting.TargetCorner;
+
+/**
+ * Scores the targets used in a pose estimate, the features {@link Camera} weighs its trust with.
+ *
+ * <p>Every feature is computed in a single indexed loop over the targets and their corners, no
+ * streams, iterators or boxing, so scoring allocates nothing. An instance is reused for every
+ * result and only ever touched by its camera's worker thread.
+ */
+public final class TargetScoring {
+  private final double halfWidth;
+  private final double halfHeight;
+  private final double inverseHalfDiagonal;
+
+  private double sumArea;
+  private double avgNormalizedDistanceFromCenter;
+  private double avgDimensionProportion;
+
+  public TargetScoring(double width, double height) {
+    this.halfWidth = width / 2.0;
+    this.halfHeight = height / 2.0;
+    this.inverseHalfDiagonal = 1.0 / Math.hypot(halfWidth, halfHeight);
+  }
+
+  /**
+   * Scores a set of targets, the results are read back with the getters.
+   *
+   * @param targets The targets used in a pose estimate.
+   */
+  public void score(List<PhotonTrackedTarget> targets) {
+    double area = 0.0;
+    double distance = 0.0;
+    double proportion = 0.0;
+    final int count = targets.size();
+    for (int i = 0; i < count; i++) {
+      final PhotonTrackedTarget target = targets.get(i);
+      area += target.getArea();
+
+      // how far the center of the target is from the center of the image, 0 to 1
+      final List<TargetCorner> rect = target.getMinAreaRectCorners();
+      final int corners = rect.size();
+      double sumX = 0.0;
+      double sumY = 0.0;
+      for (int c = 0; c < corners; c++) {
+        final TargetCorner corner = rect.get(c);
+        sumX += corner.x;
+        sumY += corner.y;
+      }
+      final double offsetX = sumX / corners - halfWidth;
+      final double offsetY = sumY / corners - halfHeight;
+      distance += Math.sqrt(offsetX * offsetX + offsetY * offsetY) * inverseHalfDiagonal;
+
+      // how square the detected corners are, skewed targets are less trustworthy
+      final List<TargetCorner> detected = target.getDetectedCorners();
+      final double height = Math.abs(detected.get(0).y - detected.get(3).y);
+      final double width = Math.abs(detected.get(1).x - detected.get(0).x);
+      proportion += Math.min(height, width) / Math.max(height, width);
+    }
+    sumArea = area;
+    avgNormalizedDistanceFromCenter = count == 0 ? 0.0 : distance / count;
+    avgDimensionProportion = count == 0 ? 0.0 : proportion / count;
+  }
+
+  /** The summed area of the targets, in percent of the image. */
+  public double sumArea() {
+    return sumArea;
+  }
+
+  /** The average distance of the targets from the center of the image, 0 at the center to 1 at a corner. */
+  public double avgNormalizedDistanceFromCenter() {
+    return avgNormalizedDistanceFromCenter;
+  }
+
+  /** The average ratio of the shorter to the longer side of the targets, 1 when square. */
+  public double avgDimensionProportion() {
+    return avgDimensionProportion;
+  }
+}
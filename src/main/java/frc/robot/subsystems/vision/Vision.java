@@ -1,39 +1,63 @@
 package frc.robot.subsystems.vision;
 
+import edu.wpi.first.apriltag.AprilTag;
 import edu.wpi.first.cscore.OpenCvLoader;
 import edu.wpi.first.math.geometry.Pose2d;
-import edu.wpi.first.math.geometry.Pose3d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
 import edu.wpi.first.util.struct.Struct;
 import edu.wpi.first.util.struct.StructSerializable;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.Timer;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
-import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import frc.robot.constants.FieldConstants;
 import frc.robot.lib.GlobalField;
 import frc.robot.lib.ProceduralStructGenerator;
+import frc.robot.lib.ProceduralStructGenerator.GenerateStruct;
+import frc.robot.lib.StructArrayBatcher;
+import frc.robot.lib.TracedSubsystem;
 import frc.robot.lib.Tracer;
 import frc.robot.subsystems.vision.VisionConstants.CameraConfig;
 import frc.robot.subsystems.vision.VisionConstants.Filtering;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 
-public class Vision extends SubsystemBase {
+public class Vision extends TracedSubsystem {
   static {
     OpenCvLoader.forceStaticLoad();
   }
 
+  /** The field pose of every tag indexed by id, null for ids not on the field. */
+  private static final Pose2d[] TAG_POSES = new Pose2d[Long.SIZE];
+
+  static {
+    for (AprilTag tag : FieldConstants.APRIL_TAG_FIELD.getTags()) {
+      if (tag.ID >= 0 && tag.ID < TAG_POSES.length) {
+        TAG_POSES[tag.ID] = tag.pose.toPose2d();
+      }
+    }
+  }
+
   private final Camera[] cameras;
+  private final String[] cameraTraceNames;
+  private final StructArrayBatcher<VisionUpdate>[] updateBatchers;
+  private final StructArrayBatcher<VisionSample>[] sampleBatchers;
 
   private final Timer timerSinceLastSample = new Timer();
-  private final HashSet<Integer> seenTags = new HashSet<>();
+
+  /** The tags seen by any camera this cycle, bit {@code n} is set if tag {@code n} was seen. */
+  private long seenTagMask = 0L;
+
+  /** The tags last shown on the field, starts with no valid mask so the first cycle publishes. */
+  private long publishedSeenTagMask = -1L;
+
+  private final ArrayList<Pose2d> seenTagPoses = new ArrayList<>();
   private final ChassisSpeeds speeds = new ChassisSpeeds();
   private final ArrayList<VisionSample> samples = new ArrayList<>();
 
+  @GenerateStruct
   public record VisionUpdate(Pose2d pose, double timestamp, double weightScalar)
       implements StructSerializable {
 
@@ -46,6 +70,7 @@ public class Vision extends SubsystemBase {
     public static final Struct<VisionUpdate> struct = ProceduralStructGenerator.genRecord(VisionUpdate.class);
   }
 
+  @GenerateStruct
   public record VisionSample(Pose2d pose, double timestamp, double weight) implements StructSerializable {
     public static final Struct<VisionSample> struct = ProceduralStructGenerator.genRecord(VisionSample.class);
   }
@@ -64,8 +89,20 @@ public class Vision extends SubsystemBase {
     return cameras;
   }
 
+  @SuppressWarnings("unchecked")
   public Vision(Camera... cameras) {
     this.cameras = cameras;
+    this.cameraTraceNames = new String[cameras.length];
+    this.updateBatchers = new StructArrayBatcher[cameras.length];
+    this.sampleBatchers = new StructArrayBatcher[cameras.length];
+    final NetworkTable table = NetworkTableInstance.getDefault().getTable("Vision");
+    for (int i = 0; i < cameras.length; i++) {
+      cameraTraceNames[i] = cameras[i].getName() + "Periodic";
+      final NetworkTable cameraTable = table.getSubTable(cameras[i].getName());
+      updateBatchers[i] = new StructArrayBatcher<>(cameraTable, "Updates", VisionUpdate.struct);
+      sampleBatchers[i] = new StructArrayBatcher<>(cameraTable, "Samples", VisionSample.struct);
+      cameras[i].start();
+    }
   }
 
   public void updateSpeeds(ChassisSpeeds speeds) {
@@ -98,10 +135,10 @@ public class Vision extends SubsystemBase {
   }
 
   @Override
-  public void periodic() {
-    Tracer.startTrace("VisionPeriodic");
-    for (final Camera camera : cameras) {
-      Tracer.startTrace(camera.getName() + "Periodic");
+  protected void tracedPeriodic() {
+    for (int i = 0; i < cameras.length; i++) {
+      final Camera camera = cameras[i];
+      Tracer.startTrace(cameraTraceNames[i]);
 
       try {
         camera.periodic();
@@ -109,34 +146,40 @@ public class Vision extends SubsystemBase {
         DriverStation.reportError("Error in camera " + camera.getName(), e.getStackTrace());
       }
 
-      camera.flushUpdates().stream()
-          .map(this::gaugeWeight)
-          .filter(Optional::isPresent)
-          .map(Optional::get)
-          .forEach(
-              sample -> {
-                timerSinceLastSample.restart();
-                samples.add(sample);
-                GlobalField.setObject(camera.getName() + "Camera", sample.pose());
-                SmartDashboard.putNumber("VisionWeight", sample.weight());
-              });
+      // pose estimation already ran on the camera's worker, only drain its finished updates
+      for (VisionUpdate update = camera.pollUpdate(); update != null; update = camera.pollUpdate()) {
+        updateBatchers[i].add(update);
+        final Optional<VisionSample> sample = gaugeWeight(update);
+        if (sample.isEmpty()) {
+          continue;
+        }
+        timerSinceLastSample.restart();
+        samples.add(sample.get());
+        sampleBatchers[i].add(sample.get());
+        GlobalField.setObject(camera.getName() + "Camera", sample.get().pose());
+      }
+      // one write per topic per cycle, empty cycles clear the dashboard
+      updateBatchers[i].publish();
+      sampleBatchers[i].publish();
 
-      seenTags.addAll(camera.getSeenTags());
+      seenTagMask |= camera.getSeenTagMask();
 
       Tracer.endTrace();
     }
 
-    Pose2d[] tagLoc =
-        seenTags.stream()
-            .map(i -> FieldConstants.APRIL_TAG_FIELD.getTagPose(i))
-            .filter(Optional::isPresent)
-            .map(Optional::get)
-            .map(Pose3d::toPose2d)
-            .toArray(Pose2d[]::new);
-    GlobalField.setObject("SeenTags", tagLoc);
-
-    seenTags.clear();
+    // the overlay only changes when a tag comes into or goes out of view
+    if (seenTagMask != publishedSeenTagMask) {
+      seenTagPoses.clear();
+      for (long tags = seenTagMask; tags != 0L; tags &= tags - 1) {
+        final Pose2d pose = TAG_POSES[Long.numberOfTrailingZeros(tags)];
+        if (pose != null) {
+          seenTagPoses.add(pose);
+        }
+      }
+      GlobalField.setObject("SeenTags", seenTagPoses);
+      publishedSeenTagMask = seenTagMask;
+    }
 
-    Tracer.endTrace();
+    seenTagMask = 0L;
   }
 }
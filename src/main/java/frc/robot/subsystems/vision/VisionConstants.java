@@ -3,8 +3,6 @@ package frc.robot.subsystems.vision;
 import frc.robot.lib.LerpTable;
 import frc.robot.subsystems.vision.Camera.CameraIntrinsics;
 
-import java.util.HashMap;
-
 import edu.wpi.first.math.geometry.Rotation3d;
 import edu.wpi.first.math.geometry.Transform3d;
 import edu.wpi.first.math.geometry.Translation3d;
@@ -79,31 +77,41 @@ public class VisionConstants {
                 new LerpTable.LerpTableEntry(7.0, 0.65),
                 new LerpTable.LerpTableEntry(12.0, 0.0));
 
-        public static final HashMap<Integer, Double> TAG_RANKINGS = new HashMap<>() {
-            {
-                put(1, 0.0); // CORAL STATION
-                put(2, 0.0); // CORAL STATION
-                put(3, 0.0); // PROCESSOR
-                put(4, 0.0); // BARGE
-                put(5, 0.0); // BARGE
-                put(6, 1.0); // REEF
-                put(7, 1.0); // REEF
-                put(8, 1.0); // REEF
-                put(9, 1.0); // REEF
-                put(10, 1.0); // REEF
-                put(11, 1.0); // REEF
-                put(12, 0.0); // CORAL STATION
-                put(13, 0.0); // CORAL STATION
-                put(14, 0.0); // BARGE
-                put(15, 0.0); // BARGE
-                put(16, 0.0); // PROCESSOR
-                put(17, 1.0); // REEF
-                put(18, 1.0); // REEF
-                put(19, 1.0); // REEF
-                put(20, 1.0); // REEF
-                put(21, 1.0); // REEF
-                put(22, 1.0); // REEF
-            }
+        /** How much each tag is trusted, indexed by tag id. Ids not in the table are not trusted. */
+        public static final double[] TAG_RANKINGS = {
+                0.0, // unused, ids start at 1
+                0.0, // 1 CORAL STATION
+                0.0, // 2 CORAL STATION
+                0.0, // 3 PROCESSOR
+                0.0, // 4 BARGE
+                0.0, // 5 BARGE
+                1.0, // 6 REEF
+                1.0, // 7 REEF
+                1.0, // 8 REEF
+                1.0, // 9 REEF
+                1.0, // 10 REEF
+                1.0, // 11 REEF
+                0.0, // 12 CORAL STATION
+                0.0, // 13 CORAL STATION
+                0.0, // 14 BARGE
+                0.0, // 15 BARGE
+                0.0, // 16 PROCESSOR
+                1.0, // 17 REEF
+                1.0, // 18 REEF
+                1.0, // 19 REEF
+                1.0, // 20 REEF
+                1.0, // 21 REEF
+                1.0, // 22 REEF
         };
+
+        /**
+         * Gets how much a tag is trusted.
+         *
+         * @param id The id of the tag.
+         * @return The ranking of the tag, 0 if it isn't in the table.
+         */
+        public static double tagRanking(int id) {
+            return id >= 0 && id < TAG_RANKINGS.length ? TAG_RANKINGS[id] : 0.0;
+        }
     }
 }
@@ -0,0 +1,122 @@
+package frc.robot.lib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+    @Test
+    void testEmptyWindow() {
+        final LatencyHistogram histogram = new LatencyHistogram(3);
+        assertEquals(0, histogram.percentile(0.5));
+        assertEquals(0, histogram.max());
+        assertEquals(0, histogram.overruns());
+    }
+
+    @Test
+    void testBucketsTileTheRange() {
+        // every value lands in exactly one bucket and buckets are contiguous
+        for (int bucket = 0; bucket < LatencyHistogram.BUCKETS - 1; bucket++) {
+            final long upper = LatencyHistogram.upperBoundOf(bucket);
+            assertEquals(bucket, LatencyHistogram.bucketOf(upper), "upper bound of " + bucket);
+            assertEquals(bucket + 1, LatencyHistogram.bucketOf(upper + 1), "past the end of " + bucket);
+        }
+    }
+
+    @Test
+    void testBucketsAreWithinAnEighth() {
+        long lower = 0;
+        for (int bucket = 0; bucket < LatencyHistogram.BUCKETS; bucket++) {
+            final long upper = LatencyHistogram.upperBoundOf(bucket);
+            assertTrue(upper - lower <= lower / 8, "bucket " + bucket + " is too wide");
+            lower = upper + 1;
+        }
+    }
+
+    @Test
+    void testSmallValuesAreExact() {
+        final LatencyHistogram histogram = new LatencyHistogram(1);
+        for (int micros = 1; micros <= 10; micros++) {
+            histogram.record(micros, false);
+        }
+        assertEquals(1, histogram.percentile(0.0));
+        assertEquals(1, histogram.percentile(0.1));
+        assertEquals(5, histogram.percentile(0.5));
+        assertEquals(9, histogram.percentile(0.9));
+        assertEquals(10, histogram.percentile(1.0));
+    }
+
+    @Test
+    void testPercentileAtRankEdges() {
+        final LatencyHistogram histogram = new LatencyHistogram(1);
+        for (int i = 0; i < 50; i++) {
+            histogram.record(10, false);
+            histogram.record(20, false);
+        }
+        // the 50th of 100 values is the last 10, the 51st the first 20
+        assertEquals(10, histogram.percentile(0.50));
+        assertEquals(LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(20)), histogram.percentile(0.51));
+        assertEquals(21, histogram.percentile(0.51));
+        assertEquals(21, histogram.percentile(0.99));
+    }
+
+    @Test
+    void testPercentileAtBucketEdges() {
+        final int bucket = LatencyHistogram.bucketOf(20_000);
+        final long lower = LatencyHistogram.upperBoundOf(bucket - 1) + 1;
+        final long upper = LatencyHistogram.upperBoundOf(bucket);
+
+        // both ends of a bucket report its upper bound
+        final LatencyHistogram histogram = new LatencyHistogram(1);
+        histogram.record(lower, false);
+        assertEquals(upper, histogram.percentile(0.5));
+        histogram.record(upper, false);
+        assertEquals(upper, histogram.percentile(1.0));
+
+        // one past the bucket moves the top percentile into the next one
+        histogram.record(upper + 1, false);
+        assertEquals(LatencyHistogram.upperBoundOf(bucket + 1), histogram.percentile(1.0));
+        assertEquals(upper, histogram.percentile(0.66));
+        assertEquals(upper + 1, histogram.max());
+    }
+
+    @Test
+    void testValuesAreClamped() {
+        final LatencyHistogram histogram = new LatencyHistogram(1);
+        histogram.record(-5, false);
+        assertEquals(0, histogram.percentile(1.0));
+
+        histogram.record(Long.MAX_VALUE, true);
+        assertEquals(LatencyHistogram.upperBoundOf(LatencyHistogram.BUCKETS - 1), histogram.percentile(1.0));
+        assertEquals(Long.MAX_VALUE, histogram.max());
+        assertEquals(1, histogram.overruns());
+    }
+
+    @Test
+    void testRotateDropsOldestSlice() {
+        final LatencyHistogram histogram = new LatencyHistogram(3);
+        histogram.record(100, true);
+        histogram.rotate();
+        histogram.record(5, false);
+        histogram.rotate();
+        histogram.record(7, true);
+
+        assertEquals(5, histogram.percentile(0.0));
+        assertEquals(LatencyHistogram.upperBoundOf(LatencyHistogram.bucketOf(100)), histogram.percentile(1.0));
+        assertEquals(100, histogram.max());
+        assertEquals(2, histogram.overruns());
+
+        // the slice holding 100 is reused
+        histogram.rotate();
+        assertEquals(7, histogram.percentile(1.0));
+        assertEquals(7, histogram.max());
+        assertEquals(1, histogram.overruns());
+
+        histogram.rotate();
+        histogram.rotate();
+        assertEquals(0, histogram.percentile(0.5));
+        assertEquals(0, histogram.max());
+        assertEquals(0, histogram.overruns());
+    }
+}
@@ -0,0 +1,477 @@
+package frc.robot.lib;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.util.struct.Struct;
+import edu.wpi.first.util.struct.StructSerializable;
+import frc.robot.lib.ProceduralStructGenerator.FixedSizeArray;
+import frc.robot.lib.ProceduralStructGenerator.GenerateStruct;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the structs of {@link ProceduralStructGenerator} against the ones the {@code
+ * struct-processor} generates at compile time. The types in {@link Generated} are marked with
+ * {@link GenerateStruct}, the identical types in {@link Procedural} aren't and are generated at
+ * runtime, so both paths have to agree on schema and layout byte for byte.
+ */
+class ProceduralStructGeneratorTest {
+    static final class Generated {
+        @GenerateStruct
+        public record Inner(int id, float scale) implements StructSerializable {
+            public static final Struct<Inner> struct = ProceduralStructGenerator.genRecord(Inner.class);
+        }
+
+        @GenerateStruct
+        public enum Mode implements StructSerializable {
+            IDLE(0.0),
+            DRIVE(1.5),
+            SCORE(-2.25);
+
+            public final double speed;
+
+            Mode(double speed) {
+                this.speed = speed;
+            }
+
+            public static final Struct<Mode> struct = ProceduralStructGenerator.genEnum(Mode.class);
+        }
+
+        @GenerateStruct
+        public record Sample(
+                long time,
+                double value,
+                boolean valid,
+                short count,
+                byte flags,
+                char tag,
+                @FixedSizeArray(size = 3) double[] history,
+                Inner inner,
+                Mode mode)
+                implements StructSerializable {
+            public static final Struct<Sample> struct = ProceduralStructGenerator.genRecord(Sample.class);
+        }
+    }
+
+    static final class Procedural {
+        public record Inner(int id, float scale) implements StructSerializable {
+            public static final Struct<Inner> struct = ProceduralStructGenerator.genRecord(Inner.class);
+        }
+
+        public enum Mode implements StructSerializable {
+            IDLE(0.0),
+            DRIVE(1.5),
+            SCORE(-2.25);
+
+            public final double speed;
+
+            Mode(double speed) {
+                this.speed = speed;
+            }
+
+            public static final Struct<Mode> struct = ProceduralStructGenerator.genEnum(Mode.class);
+        }
+
+        public record Sample(
+                long time,
+                double value,
+                boolean valid,
+                short count,
+                byte flags,
+                char tag,
+                @FixedSizeArray(size = 3) double[] history,
+                Inner inner,
+                Mode mode)
+                implements StructSerializable {
+            public static final Struct<Sample> struct = ProceduralStructGenerator.genRecord(Sample.class);
+        }
+    }
+
+    /** A record with a WPILib struct field, whose struct isn't generated from a record. */
+    public record Located(Pose2d pose, double timestamp) implements StructSerializable {
+        public static final Struct<Located> struct = ProceduralStructGenerator.genRecord(Located.class);
+    }
+
+    /** The same fields as {@code Sample} in a mutable object, for {@link ProceduralStructGenerator#genObject}. */
+    static final class MutableSample {
+        long time;
+        double value;
+        boolean valid;
+        short count;
+        byte flags;
+        char tag;
+
+        @FixedSizeArray(size = 3)
+        double[] history = new double[3];
+
+        Procedural.Inner inner = new Procedural.Inner(0, 0.0f);
+        Procedural.Mode mode = Procedural.Mode.IDLE;
+    }
+
+    private static final Struct<MutableSample> MUTABLE_STRUCT =
+            ProceduralStructGenerator.genObject(MutableSample.class, MutableSample::new);
+
+    private static Generated.Sample generatedSample() {
+        return new Generated.Sample(
+                -1234567890123L,
+                Math.PI,
+                true,
+                (short) -300,
+                (byte) 0x7f,
+                'Z',
+                new double[] {1.0, -2.5, 1e-9},
+                new Generated.Inner(42, 0.25f),
+                Generated.Mode.SCORE);
+    }
+
+    private static Procedural.Sample proceduralSample() {
+        return new Procedural.Sample(
+                -1234567890123L,
+                Math.PI,
+                true,
+                (short) -300,
+                (byte) 0x7f,
+                'Z',
+                new double[] {1.0, -2.5, 1e-9},
+                new Procedural.Inner(42, 0.25f),
+                Procedural.Mode.SCORE);
+    }
+
+    private static <T> byte[] pack(Struct<T> struct, T value) {
+        final ByteBuffer buffer = ByteBuffer.allocate(struct.getSize()).order(ByteOrder.LITTLE_ENDIAN);
+        struct.pack(buffer, value);
+        assertEquals(struct.getSize(), buffer.position(), "bytes packed");
+        return buffer.array();
+    }
+
+    private static <T> T unpack(Struct<T> struct, byte[] bytes) {
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        final T value = struct.unpack(buffer);
+        assertEquals(struct.getSize(), buffer.position(), "bytes unpacked");
+        return value;
+    }
+
+    private static Procedural.Sample proceduralSample(int i) {
+        return new Procedural.Sample(
+                1_000_000_000_000L * i - 7,
+                i / 3.0,
+                i % 2 == 0,
+                (short) (i * -1000),
+                (byte) (0x70 + i),
+                (char) ('a' + i),
+                new double[] {i, -i, i * 1e-3},
+                new Procedural.Inner(i * 11, i * 0.5f),
+                Procedural.Mode.values()[i % 3]);
+    }
+
+    /** Packs values back to back after a few bytes of padding, positioned at the first value. */
+    @SafeVarargs
+    private static <T> ByteBuffer packAll(Struct<T> struct, int padding, T... values) {
+        final ByteBuffer buffer = ByteBuffer.allocate(padding + struct.getSize() * values.length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.position(padding);
+        for (T value : values) {
+            struct.pack(buffer, value);
+        }
+        return buffer.position(padding);
+    }
+
+    private static String generatedStructName(Class<?> clazz) {
+        return clazz.getName().replace('$', '_') + "Struct";
+    }
+
+    @Test
+    void testMarkedTypesUseGeneratedStructs() {
+        assertEquals(generatedStructName(Generated.Inner.class), Generated.Inner.struct.getClass().getName());
+        assertEquals(generatedStructName(Generated.Mode.class), Generated.Mode.struct.getClass().getName());
+        assertEquals(generatedStructName(Generated.Sample.class), Generated.Sample.struct.getClass().getName());
+        assertNotEquals(
+                generatedStructName(Procedural.Sample.class), Procedural.Sample.struct.getClass().getName());
+
+        // the generated struct is registered, not regenerated
+        assertSame(Generated.Sample.struct, ProceduralStructGenerator.genRecord(Generated.Sample.class));
+        assertSame(Generated.Mode.struct, ProceduralStructGenerator.genEnum(Generated.Mode.class));
+    }
+
+    @Test
+    void testRecordSchemasMatch() {
+        assertEquals(Procedural.Inner.struct.getTypeName(), Generated.Inner.struct.getTypeName());
+        assertEquals(Procedural.Inner.struct.getSchema(), Generated.Inner.struct.getSchema());
+        assertEquals(Procedural.Inner.struct.getSize(), Generated.Inner.struct.getSize());
+
+        assertEquals(Procedural.Sample.struct.getTypeName(), Generated.Sample.struct.getTypeName());
+        assertEquals(Procedural.Sample.struct.getSchema(), Generated.Sample.struct.getSchema());
+        assertEquals(Procedural.Sample.struct.getSize(), Generated.Sample.struct.getSize());
+        // chars are uint16 in the schema, a schema char is one byte and would misalign every later field
+        assertTrue(Generated.Sample.struct.getSchema().contains("uint16 tag;"));
+        assertFalse(Generated.Sample.struct.getSchema().contains("char"));
+        assertEquals(8 + 8 + 1 + 2 + 1 + 2 + 3 * 8 + 8 + 9, Generated.Sample.struct.getSize());
+        assertEquals(
+                Procedural.Sample.struct.getNested().length, Generated.Sample.struct.getNested().length);
+    }
+
+    @Test
+    void testRecordLayoutsMatch() {
+        assertArrayEquals(
+                pack(Procedural.Sample.struct, proceduralSample()),
+                pack(Generated.Sample.struct, generatedSample()));
+    }
+
+    @Test
+    void testRecordRoundTrip() {
+        final Generated.Sample sample = generatedSample();
+        final byte[] bytes = pack(Generated.Sample.struct, sample);
+
+        final Generated.Sample generated = unpack(Generated.Sample.struct, bytes);
+        assertEquals(sample.time(), generated.time());
+        assertEquals(sample.value(), generated.value());
+        assertEquals(sample.valid(), generated.valid());
+        assertEquals(sample.count(), generated.count());
+        assertEquals(sample.flags(), generated.flags());
+        assertEquals(sample.tag(), generated.tag());
+        assertArrayEquals(sample.history(), generated.history());
+        assertEquals(sample.inner(), generated.inner());
+        assertEquals(sample.mode(), generated.mode());
+
+        // the procedural struct reads what the generated one wrote
+        final Procedural.Sample procedural = unpack(Procedural.Sample.struct, bytes);
+        assertEquals(sample.time(), procedural.time());
+        assertEquals(sample.value(), procedural.value());
+        assertEquals(sample.valid(), procedural.valid());
+        assertEquals(sample.count(), procedural.count());
+        assertEquals(sample.flags(), procedural.flags());
+        assertEquals(sample.tag(), procedural.tag());
+        assertArrayEquals(sample.history(), procedural.history());
+        assertEquals(proceduralSample().inner(), procedural.inner());
+        assertEquals(Procedural.Mode.SCORE, procedural.mode());
+    }
+
+    @Test
+    void testEnumSchemasAndLayoutsMatch() {
+        assertEquals(Procedural.Mode.struct.getTypeName(), Generated.Mode.struct.getTypeName());
+        assertEquals(Procedural.Mode.struct.getSchema(), Generated.Mode.struct.getSchema());
+        assertEquals(1 + 8, Generated.Mode.struct.getSize());
+        for (Generated.Mode mode : Generated.Mode.values()) {
+            final Procedural.Mode twin = Procedural.Mode.values()[mode.ordinal()];
+            final byte[] bytes = pack(Generated.Mode.struct, mode);
+            assertArrayEquals(pack(Procedural.Mode.struct, twin), bytes);
+            assertEquals(mode.ordinal(), bytes[0]);
+            assertEquals(mode.speed, ByteBuffer.wrap(bytes, 1, 8).order(ByteOrder.LITTLE_ENDIAN).getDouble());
+
+            assertSame(mode, unpack(Generated.Mode.struct, bytes));
+            assertSame(twin, unpack(Procedural.Mode.struct, bytes));
+        }
+    }
+
+    @Test
+    void testObjectMatchesRecordLayout() {
+        assertEquals(Generated.Sample.struct.getSchema(), MUTABLE_STRUCT.getSchema());
+        assertEquals(Generated.Sample.struct.getSize(), MUTABLE_STRUCT.getSize());
+
+        final Procedural.Sample sample = proceduralSample();
+        final MutableSample object = new MutableSample();
+        object.time = sample.time();
+        object.value = sample.value();
+        object.valid = sample.valid();
+        object.count = sample.count();
+        object.flags = sample.flags();
+        object.tag = sample.tag();
+        object.history = sample.history().clone();
+        object.inner = sample.inner();
+        object.mode = sample.mode();
+
+        assertArrayEquals(pack(Generated.Sample.struct, generatedSample()), pack(MUTABLE_STRUCT, object));
+    }
+
+    @Test
+    void testObjectStructIsRegistered() {
+        assertSame(MUTABLE_STRUCT, ProceduralStructGenerator.genObject(MutableSample.class, MutableSample::new));
+        assertSame(MUTABLE_STRUCT, ProceduralStructGenerator.genObjectNoUnpack(MutableSample.class));
+    }
+
+    @Test
+    void testObjectRoundTrip() {
+        final MutableSample object = new MutableSample();
+        object.time = Long.MIN_VALUE;
+        object.value = -0.0;
+        object.valid = true;
+        object.count = Short.MAX_VALUE;
+        object.flags = (byte) -1;
+        object.tag = '\u2603';
+        object.history = new double[] {Double.MAX_VALUE, Double.MIN_VALUE, Double.NaN};
+        object.inner = new Procedural.Inner(-7, Float.NEGATIVE_INFINITY);
+        object.mode = Procedural.Mode.DRIVE;
+
+        final MutableSample unpacked = unpack(MUTABLE_STRUCT, pack(MUTABLE_STRUCT, object));
+        assertEquals(object.time, unpacked.time);
+        assertEquals(object.value, unpacked.value);
+        assertEquals(object.valid, unpacked.valid);
+        assertEquals(object.count, unpacked.count);
+        assertEquals(object.flags, unpacked.flags);
+        assertEquals(object.tag, unpacked.tag);
+        assertArrayEquals(object.history, unpacked.history);
+        assertEquals(object.inner, unpacked.inner);
+        assertEquals(object.mode, unpacked.mode);
+    }
+
+    @Test
+    void testViewOffsets() {
+        final StructView<Procedural.Sample> view = ProceduralStructGenerator.genView(Procedural.Sample.class);
+        assertSame(Procedural.Sample.struct, view.getStruct());
+        assertEquals(63, view.getSize());
+        assertEquals(0, view.offsetOf("time"));
+        assertEquals(8, view.offsetOf("value"));
+        assertEquals(16, view.offsetOf("valid"));
+        assertEquals(17, view.offsetOf("count"));
+        assertEquals(19, view.offsetOf("flags"));
+        assertEquals(20, view.offsetOf("tag"));
+        assertEquals(22, view.offsetOf("history"));
+        assertEquals(46, view.offsetOf("inner"));
+        assertEquals(54, view.offsetOf("mode"));
+        assertThrows(IllegalArgumentException.class, () -> view.offsetOf("missing"));
+
+        // laying the schema out gives the same offsets as the record components
+        final StructView<Procedural.Sample> schemaView =
+                ProceduralStructGenerator.genView(Procedural.Sample.struct);
+        final String[] fields = {"time", "value", "valid", "count", "flags", "tag", "history", "inner", "mode"};
+        for (String field : fields) {
+            assertEquals(view.offsetOf(field), schemaView.offsetOf(field), field);
+        }
+    }
+
+    @Test
+    void testViewReadsBackToBackRecords() {
+        final int padding = 3;
+        final Procedural.Sample[] samples = new Procedural.Sample[5];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = proceduralSample(i);
+        }
+        final ByteBuffer buffer = packAll(Procedural.Sample.struct, padding, samples);
+
+        final StructView<Procedural.Sample> view =
+                ProceduralStructGenerator.genView(Procedural.Sample.class).wrap(buffer);
+        final StructView<Procedural.Inner> inner = ProceduralStructGenerator.genView(Procedural.Inner.class);
+        final StructView<Procedural.Mode> mode = ProceduralStructGenerator.genView(Procedural.Mode.struct);
+        assertEquals(samples.length, view.count());
+        assertEquals(padding, buffer.position(), "wrap moved the buffer");
+
+        final int history = view.offsetOf("history");
+        for (int i = 0; i < samples.length; i++) {
+            view.moveTo(i);
+            final Procedural.Sample sample = samples[i];
+            final int base = padding + i * view.getSize();
+
+            // every getter matches the packed bytes and the record
+            assertEquals(buffer.getLong(base + view.offsetOf("time")), view.getLong("time"));
+            assertEquals(sample.time(), view.getLong(view.offsetOf("time")));
+            assertEquals(sample.value(), view.getDouble("value"));
+            assertEquals(sample.valid(), view.getBoolean("valid"));
+            assertEquals(buffer.get(base + view.offsetOf("valid")) != 0, view.getBoolean("valid"));
+            assertEquals(sample.count(), view.getShort("count"));
+            assertEquals(sample.flags(), view.getByte("flags"));
+            assertEquals(sample.tag(), view.getChar("tag"));
+            assertEquals(buffer.getChar(base + view.offsetOf("tag")), view.getChar("tag"));
+            for (int j = 0; j < 3; j++) {
+                assertEquals(sample.history()[j], view.getDouble(history + j * Double.BYTES));
+            }
+
+            // nested records and enums are read through views of their own structs
+            view.view("inner", inner);
+            assertEquals(sample.inner().id(), inner.getInt("id"));
+            assertEquals(sample.inner().scale(), inner.getFloat("scale"));
+            assertEquals(buffer.getInt(base + view.offsetOf("inner")), inner.getInt(inner.offsetOf("id")));
+            assertEquals(sample.inner(), inner.get());
+            assertEquals(1, inner.count());
+
+            view.view("mode", mode);
+            assertEquals(sample.mode().ordinal(), mode.getByte("variant"));
+            assertEquals(sample.mode().speed, mode.getDouble("speed"));
+            assertSame(sample.mode(), mode.get());
+
+            final Procedural.Sample unpacked = view.get();
+            assertEquals(sample.time(), unpacked.time());
+            assertArrayEquals(sample.history(), unpacked.history());
+            assertEquals(sample.inner(), unpacked.inner());
+        }
+        assertEquals(padding, buffer.position(), "get moved the buffer");
+
+        // moving back reads the earlier record again
+        assertEquals(samples[1].time(), view.moveTo(1).getLong("time"));
+        assertThrows(IndexOutOfBoundsException.class, () -> view.moveTo(samples.length));
+        assertThrows(IndexOutOfBoundsException.class, () -> view.moveTo(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> inner.moveTo(1));
+    }
+
+    @Test
+    void testViewOfWpilibStruct() {
+        final Located[] values = {
+            new Located(new Pose2d(1.0, 2.0, new Rotation2d(0.5)), 10.0),
+            new Located(new Pose2d(-3.0, 4.5, new Rotation2d(-1.25)), 10.02),
+            new Located(new Pose2d(7.0, -8.0, new Rotation2d(3.0)), 10.04),
+        };
+        final ByteBuffer buffer = packAll(Located.struct, 0, values);
+
+        final StructView<Located> view = ProceduralStructGenerator.genView(Located.class).wrap(buffer);
+        final StructView<Pose2d> pose = ProceduralStructGenerator.genView(Pose2d.struct);
+        final StructView<Translation2d> translation = ProceduralStructGenerator.genView(Translation2d.struct);
+        final StructView<Rotation2d> rotation = ProceduralStructGenerator.genView(Rotation2d.struct);
+        assertEquals(0, pose.offsetOf("translation"));
+        assertEquals(16, pose.offsetOf("rotation"));
+        assertEquals(8, translation.offsetOf("y"));
+
+        for (int i = 0; i < values.length; i++) {
+            view.moveTo(i).view("pose", pose);
+            assertEquals(values[i].timestamp(), view.getDouble("timestamp"));
+            assertEquals(values[i].pose().getX(), pose.view("translation", translation).getDouble("x"));
+            assertEquals(values[i].pose().getY(), translation.getDouble("y"));
+            assertEquals(
+                    values[i].pose().getRotation().getRadians(),
+                    pose.view("rotation", rotation).getDouble("value"));
+            assertEquals(values[i].pose(), pose.get());
+        }
+    }
+
+    @Test
+    void testViewRejectsBitFields() {
+        final Struct<Procedural.Inner> bitFields = new Struct<>() {
+            @Override
+            public Class<Procedural.Inner> getTypeClass() {
+                return Procedural.Inner.class;
+            }
+
+            @Override
+            public String getTypeName() {
+                return "BitFields";
+            }
+
+            @Override
+            public int getSize() {
+                return 1;
+            }
+
+            @Override
+            public String getSchema() {
+                return "uint8 low:4;uint8 high:4";
+            }
+
+            @Override
+            public Procedural.Inner unpack(ByteBuffer buffer) {
+                return null;
+            }
+
+            @Override
+            public void pack(ByteBuffer buffer, Procedural.Inner value) {}
+        };
+        assertThrows(IllegalArgumentException.class, () -> ProceduralStructGenerator.genView(bitFields));
+    }
+}
@@ -0,0 +1,123 @@
+package frc.robot.lib;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+class SpscQueueTest {
+    @Test
+    void testEmptyQueuePollsNull() {
+        final SpscQueue<Integer> queue = new SpscQueue<>(4);
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void testCapacityRoundsUpToPowerOfTwo() {
+        assertEquals(2, fill(new SpscQueue<>(1)));
+        assertEquals(2, fill(new SpscQueue<>(2)));
+        assertEquals(4, fill(new SpscQueue<>(3)));
+        assertEquals(4, fill(new SpscQueue<>(4)));
+        assertEquals(8, fill(new SpscQueue<>(5)));
+    }
+
+    @Test
+    void testFullQueueRejectsUntilPolled() {
+        final SpscQueue<Integer> queue = new SpscQueue<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(4));
+        assertEquals(4, queue.size());
+
+        assertEquals(0, queue.poll());
+        assertTrue(queue.offer(4));
+        assertFalse(queue.offer(5));
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, queue.poll());
+        }
+        assertNull(queue.poll());
+    }
+
+    @Test
+    void testWrapsAroundInOrder() {
+        final SpscQueue<Integer> queue = new SpscQueue<>(4);
+        int next = 0;
+        int expected = 0;
+        // offsets of 3 against a ring of 4 land every slot at every position in the batch
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(queue.offer(next++));
+            }
+            assertEquals(3, queue.size());
+            for (int i = 0; i < 3; i++) {
+                assertEquals(expected++, queue.poll());
+            }
+            assertNull(queue.poll());
+        }
+    }
+
+    @Test
+    void testFullAndEmptyAcrossWraparound() {
+        final SpscQueue<Integer> queue = new SpscQueue<>(4);
+        queue.offer(-1);
+        queue.poll();
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(queue.offer(round * 4 + i));
+            }
+            assertFalse(queue.offer(-1));
+            for (int i = 0; i < 4; i++) {
+                assertEquals(round * 4 + i, queue.poll());
+            }
+            assertNull(queue.poll());
+        }
+    }
+
+    @Test
+    void testProducerAndConsumerThreads() throws InterruptedException {
+        final int count = 100_000;
+        final SpscQueue<Integer> queue = new SpscQueue<>(16);
+        final AtomicReference<String> error = new AtomicReference<>();
+
+        final Thread producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                while (!queue.offer(i)) {
+                    Thread.yield();
+                }
+            }
+        });
+        final Thread consumer = new Thread(() -> {
+            for (int expected = 0; expected < count; expected++) {
+                Integer value;
+                while ((value = queue.poll()) == null) {
+                    Thread.yield();
+                }
+                if (value != expected) {
+                    error.set("Expected " + expected + " but polled " + value);
+                    return;
+                }
+            }
+        });
+        producer.start();
+        consumer.start();
+        producer.join(10_000);
+        consumer.join(10_000);
+
+        assertFalse(producer.isAlive() || consumer.isAlive(), "Threads didn't finish");
+        assertNull(error.get(), error.get());
+        assertNull(queue.poll());
+    }
+
+    private static int fill(SpscQueue<Integer> queue) {
+        int offered = 0;
+        while (queue.offer(offered)) {
+            offered++;
+        }
+        return offered;
+    }
+}
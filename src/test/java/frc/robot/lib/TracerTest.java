@@ -0,0 +1,99 @@
+package frc.robot.lib;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import edu.wpi.first.hal.HAL;
+import java.lang.management.ManagementFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a steady state {@link Tracer} cycle allocates nothing, in every mode that promises
+ * it. The first cycles intern the trace tree and create the publishers, after that the thread's
+ * allocation counter must not grow.
+ */
+class TracerTest {
+    private static final int WARMUP_CYCLES = 200;
+    private static final int MEASURED_CYCLES = 500;
+
+    /**
+     * Room for one-off JVM bookkeeping on the test thread. A single 16 byte object allocated per
+     * cycle would be 8000 bytes.
+     */
+    private static final long ALLOWED_BYTES = 1024;
+
+    @BeforeEach
+    void setup() {
+        HAL.initialize(500, 0);
+        Tracer.resetForTest();
+    }
+
+    @AfterEach
+    void cleanup() {
+        Tracer.resetForTest();
+        HAL.shutdown();
+    }
+
+    private static void cycle() {
+        Tracer.startTrace("Cycle");
+        Tracer.traceFunc("First", () -> {});
+        Tracer.startTrace("Second");
+        Tracer.traceFunc("Nested", () -> {});
+        Tracer.endTrace();
+        Tracer.endTrace();
+    }
+
+    private static void assertCyclesDoNotAllocate() {
+        assumeTrue(
+                ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                        && bean.isThreadAllocatedMemorySupported(),
+                "This JVM can't measure thread allocations");
+        final com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        bean.setThreadAllocatedMemoryEnabled(true);
+
+        for (int i = 0; i < WARMUP_CYCLES; i++) {
+            cycle();
+        }
+        final long before = bean.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < MEASURED_CYCLES; i++) {
+            cycle();
+        }
+        final long allocated = bean.getCurrentThreadAllocatedBytes() - before;
+        assertTrue(
+                allocated <= ALLOWED_BYTES,
+                allocated + " bytes allocated over " + MEASURED_CYCLES + " cycles");
+    }
+
+    @Test
+    void testSteadyStateDoesNotAllocate() {
+        assertCyclesDoNotAllocate();
+    }
+
+    @Test
+    void testCompactPublishingDoesNotAllocate() {
+        Tracer.enableCompactPublishingForCurrentThread();
+        assertCyclesDoNotAllocate();
+    }
+
+    @Test
+    void testSamplingDoesNotAllocate() {
+        Tracer.setSamplingPeriod(10);
+        assertCyclesDoNotAllocate();
+    }
+
+    @Test
+    void testOverrunCaptureDoesNotAllocate() {
+        // a budget no cycle reaches, so only recording is measured
+        Tracer.enableOverrunCapture(50, 60.0);
+        assertCyclesDoNotAllocate();
+    }
+
+    @Test
+    void testAllocationTrackingDoesNotAllocate() {
+        Tracer.enableAllocationTrackingForCurrentThread();
+        assertCyclesDoNotAllocate();
+    }
+}
@@ -0,0 +1,753 @@
+package frc.robot.lib.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.RecordComponentElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+/**
+ * An annotation processor that emits plain {@code Struct<T>} implementations for records and enums
+ * annotated with {@code ProceduralStructGenerator.GenerateStruct}.
+ *
+ * <p>The emitted classes produce the exact same schema and layout as {@code
+ * ProceduralStructGenerator.genRecord}/{@code genEnum}, which look them up by name at runtime. Any
+ * type this processor cannot handle is skipped with a note and keeps using the procedural struct.
+ */
+@SupportedAnnotationTypes(StructProcessor.GENERATE_STRUCT)
+public final class StructProcessor extends AbstractProcessor {
+    static final String GENERATOR = "frc.robot.lib.ProceduralStructGenerator";
+    static final String GENERATE_STRUCT = GENERATOR + ".GenerateStruct";
+    static final String IGNORE_STRUCT_FIELD = GENERATOR + ".IgnoreStructField";
+    static final String FIXED_SIZE_ARRAY = GENERATOR + ".FixedSizeArray";
+    static final String STRUCT = "edu.wpi.first.util.struct.Struct";
+
+    private Elements m_elements;
+    private Types m_types;
+    private Filer m_filer;
+    private Messager m_messager;
+
+    /** Thrown when a type can't be represented by a generated struct. */
+    private static final class UnsupportedTypeException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private UnsupportedTypeException(String message) {
+            super(message);
+        }
+    }
+
+    /** The primitive schema types, mirrors {@code ProceduralStructGenerator.PrimType}. */
+    private enum Prim {
+        LONG("int64", 8, "buffer.putLong(%s)", "buffer.getLong()", "buffer.asLongBuffer()"),
+        INT("int32", 4, "buffer.putInt(%s)", "buffer.getInt()", "buffer.asIntBuffer()"),
+        DOUBLE("float64", 8, "buffer.putDouble(%s)", "buffer.getDouble()", "buffer.asDoubleBuffer()"),
+        FLOAT("float32", 4, "buffer.putFloat(%s)", "buffer.getFloat()", "buffer.asFloatBuffer()"),
+        BOOLEAN("bool", 1, "buffer.put((byte) (%s ? 1 : 0))", "buffer.get() != 0", null),
+        // a schema char is a single byte, a java char is an unsigned 16 bit code unit
+        CHAR("uint16", 2, "buffer.putChar(%s)", "buffer.getChar()", "buffer.asCharBuffer()"),
+        BYTE("uint8", 1, "buffer.put(%s)", "buffer.get()", "buffer"),
+        SHORT("int16", 2, "buffer.putShort(%s)", "buffer.getShort()", "buffer.asShortBuffer()");
+
+        final String m_schemaType;
+        final int m_size;
+        final String m_put;
+        final String m_get;
+        /** A buffer expression arrays of this type are copied through in bulk, null if they can't be. */
+        final String m_bulk;
+
+        Prim(String schemaType, int size, String put, String get, String bulk) {
+            m_schemaType = schemaType;
+            m_size = size;
+            m_put = put;
+            m_get = get;
+            m_bulk = bulk;
+        }
+
+        static Optional<Prim> of(TypeKind kind) {
+            return switch (kind) {
+                case LONG -> Optional.of(LONG);
+                case INT -> Optional.of(INT);
+                case DOUBLE -> Optional.of(DOUBLE);
+                case FLOAT -> Optional.of(FLOAT);
+                case BOOLEAN -> Optional.of(BOOLEAN);
+                case CHAR -> Optional.of(CHAR);
+                case BYTE -> Optional.of(BYTE);
+                case SHORT -> Optional.of(SHORT);
+                default -> Optional.empty();
+            };
+        }
+    }
+
+    /**
+     * A single struct field.
+     *
+     * @param name The schema name of the field.
+     * @param javaType The source type of the field.
+     * @param prim The primitive type of the field or its elements, null for nested structs.
+     * @param struct An expression for the nested {@code Struct} of the field or its elements.
+     * @param arraySize The fixed array size, zero for non-arrays.
+     * @param read The expression reading the field from {@code value}, null for ignored fields.
+     */
+    private record FieldModel(
+            String name, String javaType, Prim prim, String struct, int arraySize, String read) {
+        boolean ignored() {
+            return read == null;
+        }
+
+        String schemaName() {
+            return arraySize > 0 ? name + "[" + arraySize + "]" : name;
+        }
+
+        String schemaExpr() {
+            if (prim != null) {
+                return quote(prim.m_schemaType + " " + schemaName() + ";");
+            }
+            return struct + ".getTypeName() + " + quote(" " + schemaName() + ";");
+        }
+
+        String sizeExpr() {
+            String element = prim != null ? Integer.toString(prim.m_size) : struct + ".getSize()";
+            return arraySize > 0 ? arraySize + " * " + element : element;
+        }
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        m_elements = processingEnv.getElementUtils();
+        m_types = processingEnv.getTypeUtils();
+        m_filer = processingEnv.getFiler();
+        m_messager = processingEnv.getMessager();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                TypeElement type = (TypeElement) element;
+                try {
+                    if (type.getKind() == ElementKind.RECORD) {
+                        emit(type, recordSource(type));
+                    } else if (type.getKind() == ElementKind.ENUM) {
+                        emit(type, enumSource(type));
+                    } else {
+                        m_messager.printMessage(
+                                Diagnostic.Kind.ERROR,
+                                "@GenerateStruct only supports records and enums",
+                                type);
+                    }
+                } catch (UnsupportedTypeException e) {
+                    m_messager.printMessage(
+                            Diagnostic.Kind.NOTE,
+                            "Falling back to ProceduralStructGenerator: " + e.getMessage(),
+                            type);
+                } catch (IOException e) {
+                    m_messager.printMessage(
+                            Diagnostic.Kind.ERROR, "Could not write generated struct: " + e, type);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The name of the generated struct for a type, the nesting chain joined by underscores with a
+     * {@code Struct} suffix. {@code ProceduralStructGenerator} derives the same name at runtime.
+     */
+    static String generatedSimpleName(TypeElement type) {
+        StringBuilder sb = new StringBuilder(type.getSimpleName());
+        Element enclosing = type.getEnclosingElement();
+        while (enclosing instanceof TypeElement outer) {
+            sb.insert(0, outer.getSimpleName() + "_");
+            enclosing = outer.getEnclosingElement();
+        }
+        return sb.append("Struct").toString();
+    }
+
+    private void emit(TypeElement type, String source) throws IOException {
+        PackageElement pkg = m_elements.getPackageOf(type);
+        String name = pkg.isUnnamed()
+                ? generatedSimpleName(type)
+                : pkg.getQualifiedName() + "." + generatedSimpleName(type);
+        try (Writer writer = m_filer.createSourceFile(name, type).openWriter()) {
+            writer.write(source);
+        }
+    }
+
+    private static String quote(String str) {
+        return '"' + str.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+    private Optional<? extends AnnotationMirror> annotation(Element element, String name) {
+        return element.getAnnotationMirrors().stream()
+                .filter(
+                        mirror -> ((TypeElement) mirror.getAnnotationType().asElement())
+                                .getQualifiedName()
+                                .contentEquals(name))
+                .findFirst();
+    }
+
+    private int arraySize(Element element) throws UnsupportedTypeException {
+        Optional<? extends AnnotationMirror> mirror = annotation(element, FIXED_SIZE_ARRAY);
+        if (mirror.isEmpty()) {
+            throw new UnsupportedTypeException(element + " is an array without @FixedSizeArray");
+        }
+        for (var entry : mirror.get().getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals("size")) {
+                AnnotationValue value = entry.getValue();
+                return (Integer) value.getValue();
+            }
+        }
+        throw new UnsupportedTypeException(element + " has no @FixedSizeArray size");
+    }
+
+    private static boolean accessible(Element element) {
+        return !element.getModifiers().contains(Modifier.PRIVATE);
+    }
+
+    /**
+     * Finds the public static {@code struct} field of a type, this is the same contract {@code
+     * ProceduralStructGenerator.extractClassStruct} relies on.
+     */
+    private Optional<String> structOf(TypeMirror mirror) {
+        if (!(mirror instanceof DeclaredType declared)) {
+            return Optional.empty();
+        }
+        TypeElement type = (TypeElement) declared.asElement();
+        TypeElement structType = m_elements.getTypeElement(STRUCT);
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (field.getSimpleName().contentEquals("struct")
+                    && field.getModifiers().contains(Modifier.STATIC)
+                    && field.getModifiers().contains(Modifier.PUBLIC)
+                    && structType != null
+                    && m_types.isAssignable(
+                            m_types.erasure(field.asType()),
+                            m_types.erasure(structType.asType()))) {
+                return Optional.of(m_types.erasure(mirror) + ".struct");
+            }
+        }
+        return Optional.empty();
+    }
+
+    private FieldModel field(Element element, String name, TypeMirror type, String read)
+            throws UnsupportedTypeException {
+        String javaType = m_types.erasure(type).toString();
+        if (annotation(element, IGNORE_STRUCT_FIELD).isPresent()) {
+            return new FieldModel(name, javaType, null, null, 0, null);
+        }
+        int arraySize = 0;
+        TypeMirror elementType = type;
+        if (type instanceof ArrayType array) {
+            arraySize = arraySize(element);
+            elementType = array.getComponentType();
+        }
+        if (elementType.getKind().isPrimitive()) {
+            Prim prim = Prim.of(elementType.getKind()).orElseThrow();
+            return new FieldModel(name, javaType, prim, null, arraySize, read);
+        }
+        if (arraySize == 0) {
+            try {
+                PrimitiveType unboxed = m_types.unboxedType(elementType);
+                return new FieldModel(
+                        name, javaType, Prim.of(unboxed.getKind()).orElseThrow(), null, 0, read);
+            } catch (IllegalArgumentException e) {
+                // not a boxed primitive
+            }
+        }
+        Optional<String> struct = structOf(elementType);
+        if (struct.isEmpty()) {
+            throw new UnsupportedTypeException(
+                    element + " of type " + elementType + " has no public static struct field");
+        }
+        return new FieldModel(name, javaType, null, struct.get(), arraySize, read);
+    }
+
+    private void checkAccessible(TypeElement type) throws UnsupportedTypeException {
+        Element current = type;
+        while (current instanceof TypeElement t) {
+            if (!accessible(t)) {
+                throw new UnsupportedTypeException(t + " is private");
+            }
+            if (!t.getTypeParameters().isEmpty()) {
+                throw new UnsupportedTypeException(t + " is generic");
+            }
+            current = t.getEnclosingElement();
+        }
+    }
+
+    private List<FieldModel> recordFields(TypeElement type) throws UnsupportedTypeException {
+        List<FieldModel> fields = new ArrayList<>();
+        for (RecordComponentElement component : type.getRecordComponents()) {
+            String name = component.getSimpleName().toString();
+            fields.add(field(component, name, component.asType(), "value." + name + "()"));
+        }
+        return fields;
+    }
+
+    private List<FieldModel> enumFields(TypeElement type) throws UnsupportedTypeException {
+        List<FieldModel> fields = new ArrayList<>();
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (field.getKind() == ElementKind.ENUM_CONSTANT
+                    || field.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            if (!accessible(field) && annotation(field, IGNORE_STRUCT_FIELD).isEmpty()) {
+                throw new UnsupportedTypeException(field + " is private");
+            }
+            String name = field.getSimpleName().toString();
+            fields.add(field(field, name, field.asType(), "value." + name));
+        }
+        return fields;
+    }
+
+    private static void header(StringBuilder sb, TypeElement type, PackageElement pkg) {
+        sb.append("// Generated by ")
+                .append(StructProcessor.class.getName())
+                .append(", do not edit.\n");
+        if (!pkg.isUnnamed()) {
+            sb.append("package ").append(pkg.getQualifiedName()).append(";\n\n");
+        }
+        sb.append("import edu.wpi.first.util.struct.Struct;\n")
+                .append("import java.nio.ByteBuffer;\n")
+                .append("import java.nio.ByteOrder;\n")
+                .append("import java.util.LinkedHashSet;\n")
+                .append("import java.util.Objects;\n\n")
+                .append("/** Compile time generated {@link Struct} for {@link ")
+                .append(type.getQualifiedName())
+                .append("}. */\n")
+                .append("@javax.annotation.processing.Generated(\"")
+                .append(StructProcessor.class.getName())
+                .append("\")\n");
+    }
+
+    /** Emits the shared constants, schema is built at class init since nested names are runtime. */
+    private static void constants(
+            StringBuilder sb,
+            String typeName,
+            String schemaPrefix,
+            int prefixSize,
+            List<FieldModel> fields) {
+        StringBuilder schema = new StringBuilder("        SCHEMA = ").append(quote(schemaPrefix));
+        StringBuilder size = new StringBuilder("        SIZE = ").append(prefixSize);
+        for (FieldModel field : fields) {
+            if (field.ignored()) {
+                continue;
+            }
+            schema.append("\n                + ").append(field.schemaExpr());
+            size.append("\n                + ").append(field.sizeExpr());
+        }
+        sb.append("    private static final String SCHEMA;\n")
+                .append("    private static final int SIZE;\n")
+                .append("    private static final Struct<?>[] NESTED;\n\n")
+                .append("    static {\n")
+                .append(schema)
+                .append(";\n")
+                .append(size)
+                .append(";\n")
+                .append("        final LinkedHashSet<Struct<?>> nested = new LinkedHashSet<>();\n");
+        for (FieldModel field : fields) {
+            if (!field.ignored() && field.struct() != null) {
+                sb.append("        for (Struct<?> struct : ")
+                        .append(field.struct())
+                        .append(".getNested()) {\n")
+                        .append("            nested.add(struct);\n")
+                        .append("        }\n")
+                        .append("        nested.add(")
+                        .append(field.struct())
+                        .append(");\n");
+            }
+        }
+        sb.append("        NESTED = nested.toArray(new Struct<?>[0]);\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public Class<")
+                .append(typeName)
+                .append("> getTypeClass() {\n")
+                .append("        return ")
+                .append(typeName)
+                .append(".class;\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public String getTypeName() {\n")
+                .append("        return ")
+                .append(quote(typeName.substring(typeName.lastIndexOf('.') + 1)))
+                .append(";\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public String getSchema() {\n")
+                .append("        return SCHEMA;\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public int getSize() {\n")
+                .append("        return SIZE;\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public Struct<?>[] getNested() {\n")
+                .append("        return NESTED;\n")
+                .append("    }\n\n");
+    }
+
+    private static void packFields(
+            StringBuilder sb, String typeName, String kind, List<FieldModel> fields) {
+        sb.append("        final int start = buffer.position();\n").append("        try {\n");
+        if (kind.equals("enum")) {
+            sb.append("            buffer.put((byte) value.ordinal());\n");
+        }
+        for (FieldModel field : fields) {
+            if (field.ignored()) {
+                continue;
+            }
+            String indent = "            ";
+            String read = field.read();
+            if (field.arraySize() > 0 && field.prim() != null && field.prim().m_bulk != null) {
+                String local = "_" + field.name();
+                sb.append(indent)
+                        .append("final ")
+                        .append(field.javaType())
+                        .append(' ')
+                        .append(local)
+                        .append(" = ")
+                        .append(read)
+                        .append(";\n")
+                        .append(indent)
+                        .append("if (")
+                        .append(local)
+                        .append(".length != ")
+                        .append(field.arraySize())
+                        .append(") {\n")
+                        .append(indent)
+                        .append("    throw new IllegalArgumentException(\"Array has length \" + ")
+                        .append(local)
+                        .append(".length + \" but the field has size ")
+                        .append(field.arraySize())
+                        .append("\");\n")
+                        .append(indent)
+                        .append("}\n");
+                bulkCopy(sb, indent, field, "put");
+                continue;
+            }
+            if (field.arraySize() > 0) {
+                sb.append(indent)
+                        .append("final ")
+                        .append(field.javaType())
+                        .append(" _")
+                        .append(field.name())
+                        .append(" = ")
+                        .append(read)
+                        .append(";\n")
+                        .append(indent)
+                        .append("for (int i = 0; i < ")
+                        .append(field.arraySize())
+                        .append("; i++) {\n");
+                indent += "    ";
+                read = "_" + field.name() + "[i]";
+            }
+            sb.append(indent);
+            if (field.prim() != null) {
+                sb.append(String.format(field.prim().m_put, read));
+            } else {
+                sb.append(field.struct())
+                        .append(".pack(buffer, Objects.requireNonNull(")
+                        .append(read)
+                        .append(", \"Field is null\"))");
+            }
+            sb.append(";\n");
+            if (field.arraySize() > 0) {
+                sb.append("            }\n");
+            }
+        }
+        String simpleName = typeName.substring(typeName.lastIndexOf('.') + 1);
+        sb.append("        } catch (RuntimeException e) {\n")
+                .append("            System.out.println(\"[WARNING] Could not pack ")
+                .append(kind)
+                .append(": ")
+                .append(simpleName)
+                .append("\\n    \" + e);\n")
+                .append("            buffer.position(start);\n")
+                .append("            buffer.put(new byte[SIZE]);\n")
+                .append("        }\n");
+    }
+
+    /**
+     * Emits a bulk copy between a primitive array local and the buffer, moving the buffer past it.
+     *
+     * @param op Either {@code put} or {@code get}.
+     */
+    private static void bulkCopy(StringBuilder sb, String indent, FieldModel field, String op) {
+        String local = "_" + field.name();
+        sb.append(indent)
+                .append(field.prim().m_bulk)
+                .append('.')
+                .append(op)
+                .append('(')
+                .append(local)
+                .append(");\n");
+        if (field.prim() != Prim.BYTE) {
+            sb.append(indent)
+                    .append("buffer.position(buffer.position() + ")
+                    .append(field.arraySize() * field.prim().m_size)
+                    .append(");\n");
+        }
+    }
+
+    private static String defaultValue(String javaType) {
+        return switch (javaType) {
+            case "boolean" -> "false";
+            case "long", "int", "double", "float", "char", "byte", "short" ->
+                    "(" + javaType + ") 0";
+            default -> "null";
+        };
+    }
+
+    private String recordSource(TypeElement type) throws UnsupportedTypeException {
+        checkAccessible(type);
+        List<FieldModel> fields = recordFields(type);
+        PackageElement pkg = m_elements.getPackageOf(type);
+        String typeName = type.getQualifiedName().toString();
+        StringBuilder sb = new StringBuilder();
+        header(sb, type, pkg);
+        sb.append("public final class ")
+                .append(generatedSimpleName(type))
+                .append(" implements Struct<")
+                .append(typeName)
+                .append("> {\n");
+        constants(sb, typeName, "", 0, fields);
+
+        StringBuilder immutable = new StringBuilder("true");
+        for (FieldModel field : fields) {
+            if (field.ignored()) {
+                continue;
+            }
+            if (field.arraySize() > 0) {
+                immutable = new StringBuilder("false");
+                break;
+            } else if (field.struct() != null) {
+                immutable.append(" && ").append(field.struct()).append(".isImmutable()");
+            }
+        }
+        sb.append("    @Override\n")
+                .append("    public boolean isImmutable() {\n")
+                .append("        return ")
+                .append(immutable)
+                .append(";\n")
+                .append("    }\n\n");
+
+        sb.append("    @Override\n")
+                .append("    public void pack(ByteBuffer buffer, ")
+                .append(typeName)
+                .append(" value) {\n");
+        packFields(sb, typeName, "record", fields);
+        sb.append("    }\n\n");
+
+        sb.append("    @Override\n")
+                .append("    public ")
+                .append(typeName)
+                .append(" unpack(ByteBuffer buffer) {\n");
+        List<String> args = new ArrayList<>();
+        for (FieldModel field : fields) {
+            String local = "_" + field.name();
+            args.add(local);
+            sb.append("        final ")
+                    .append(field.javaType())
+                    .append(' ')
+                    .append(local)
+                    .append(" = ");
+            if (field.ignored()) {
+                sb.append(defaultValue(field.javaType())).append(";\n");
+                continue;
+            }
+            String read = field.prim() != null
+                    ? field.prim().m_get
+                    : field.struct() + ".unpack(buffer)";
+            if (field.arraySize() > 0) {
+                String elementType = field.javaType().substring(0, field.javaType().length() - 2);
+                sb.append("new ")
+                        .append(elementType)
+                        .append('[')
+                        .append(field.arraySize())
+                        .append("];\n");
+                if (field.prim() != null && field.prim().m_bulk != null) {
+                    bulkCopy(sb, "        ", field, "get");
+                    continue;
+                }
+                sb.append("        for (int i = 0; i < ")
+                        .append(field.arraySize())
+                        .append("; i++) {\n")
+                        .append("            ")
+                        .append(local)
+                        .append("[i] = ")
+                        .append(read)
+                        .append(";\n")
+                        .append("        }\n");
+            } else {
+                sb.append(read).append(";\n");
+            }
+        }
+        sb.append("        return new ")
+                .append(typeName)
+                .append('(')
+                .append(String.join(", ", args))
+                .append(");\n")
+                .append("    }\n")
+                .append("}\n");
+        return sb.toString();
+    }
+
+    private String enumSource(TypeElement type) throws UnsupportedTypeException {
+        checkAccessible(type);
+        List<FieldModel> fields = enumFields(type);
+        PackageElement pkg = m_elements.getPackageOf(type);
+        String typeName = type.getQualifiedName().toString();
+
+        StringBuilder variants = new StringBuilder("enum {");
+        boolean first = true;
+        int ordinal = 0;
+        for (Element element : type.getEnclosedElements()) {
+            if (element.getKind() != ElementKind.ENUM_CONSTANT) {
+                continue;
+            }
+            if (!first) {
+                variants.append(',');
+            }
+            first = false;
+            variants.append(element.getSimpleName()).append('=').append(ordinal++);
+        }
+        if (ordinal == 0) {
+            throw new UnsupportedTypeException(type + " has no constants");
+        }
+        variants.append("} int8 variant;");
+
+        StringBuilder sb = new StringBuilder();
+        header(sb, type, pkg);
+        sb.append("public final class ")
+                .append(generatedSimpleName(type))
+                .append(" implements Struct<")
+                .append(typeName)
+                .append("> {\n")
+                .append("    private static final ")
+                .append(typeName)
+                .append("[] VARIANTS = ")
+                .append(typeName)
+                .append(".values();\n\n");
+        constants(sb, typeName, variants.toString(), 1, fields);
+
+        sb.append("    @Override\n")
+                .append("    public boolean isImmutable() {\n")
+                .append("        return true;\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public boolean isCloneable() {\n")
+                .append("        return true;\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    public ")
+                .append(typeName)
+                .append(" clone(")
+                .append(typeName)
+                .append(" obj) {\n")
+                .append("        return obj;\n")
+                .append("    }\n\n");
+
+        // constants pack to the same bytes every time when every field is immutable
+        StringBuilder immutable = new StringBuilder("true");
+        for (VariableElement element : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (element.getKind() != ElementKind.ENUM_CONSTANT
+                    && !element.getModifiers().contains(Modifier.STATIC)
+                    && annotation(element, IGNORE_STRUCT_FIELD).isEmpty()
+                    && !element.getModifiers().contains(Modifier.FINAL)) {
+                immutable = new StringBuilder("false");
+            }
+        }
+        for (FieldModel field : fields) {
+            if (field.ignored()) {
+                continue;
+            }
+            if (field.arraySize() > 0) {
+                immutable = new StringBuilder("false");
+                break;
+            } else if (field.struct() != null) {
+                immutable.append(" && ").append(field.struct()).append(".isImmutable()");
+            }
+        }
+        sb.append("    private static final byte[][] IMAGES = images();\n\n")
+                .append("    private static byte[][] images() {\n")
+                .append("        if (!(")
+                .append(immutable)
+                .append(")) {\n")
+                .append("            return null;\n")
+                .append("        }\n")
+                .append("        final byte[][] images = new byte[VARIANTS.length][];\n")
+                .append("        for (")
+                .append(typeName)
+                .append(" value : VARIANTS) {\n")
+                .append("            final ByteBuffer buffer =\n")
+                .append("                    ByteBuffer.allocate(SIZE).order(ByteOrder.LITTLE_ENDIAN);\n")
+                .append("            write(buffer, value);\n")
+                .append("            images[value.ordinal()] = buffer.array();\n")
+                .append("        }\n")
+                .append("        return images;\n")
+                .append("    }\n\n");
+
+        sb.append("    private static void write(ByteBuffer buffer, ")
+                .append(typeName)
+                .append(" value) {\n");
+        packFields(sb, typeName, "enum", fields);
+        sb.append("    }\n\n");
+
+        sb.append("    @Override\n")
+                .append("    public void pack(ByteBuffer buffer, ")
+                .append(typeName)
+                .append(" value) {\n")
+                .append("        if (IMAGES != null) {\n")
+                .append("            buffer.put(IMAGES[value.ordinal()]);\n")
+                .append("        } else {\n")
+                .append("            write(buffer, value);\n")
+                .append("        }\n")
+                .append("    }\n\n");
+
+        sb.append("    @Override\n")
+                .append("    public ")
+                .append(typeName)
+                .append(" unpack(ByteBuffer buffer) {\n")
+                .append("        final int start = buffer.position();\n")
+                .append("        final int ordinal = buffer.get();\n")
+                .append("        buffer.position(start + SIZE);\n")
+                .append("        return ordinal >= 0 && ordinal < VARIANTS.length\n")
+                .append("                ? VARIANTS[ordinal]\n")
+                .append("                : null;\n")
+                .append("    }\n")
+                .append("}\n");
+        return sb.toString();
+    }
+}